@@ -1,16 +1,13 @@
 package no.ntnu.ambulanceallocation;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class CSV {
 
@@ -70,12 +67,37 @@ public class CSV {
                 .collect(Collectors.joining(","));
     }
 
+    // Splits the lines in parallel, then passes them to the consumer in order
     public static void readCSVThenParse(String fileName, Consumer<String[]> consumer)
             throws IOException, NumberFormatException {
 
-        Stream<String> lines = new BufferedReader(
-                new InputStreamReader(CSV.class.getResourceAsStream(fileName), StandardCharsets.UTF_8)).lines();
-        lines.map(line -> line.split(",")).forEach(consumer);
+        try (InputStream inputStream = CSV.class.getResourceAsStream(fileName)) {
+            ChunkedCSVReader.Result<List<String[]>> result = ChunkedCSVReader.read(inputStream, 0,
+                    new ChunkedCSVReader.RowParser<List<String[]>>() {
+
+                        @Override
+                        public List<String[]> newChunk() {
+                            return new ArrayList<>();
+                        }
+
+                        @Override
+                        public boolean parse(ChunkedCSVReader.Row row, List<String[]> chunk) {
+                            // Drops trailing empty fields, like String.split
+                            int fields = row.fieldCount();
+                            while (fields > 1 && row.getString(fields - 1).isEmpty()) {
+                                fields--;
+                            }
+                            String[] values = new String[fields];
+                            for (int i = 0; i < values.length; i++) {
+                                values[i] = row.getString(i);
+                            }
+                            chunk.add(values);
+                            return true;
+                        }
+
+                    });
+            result.chunks().forEach(chunk -> chunk.forEach(consumer));
+        }
     }
 
 }
@@ -0,0 +1,329 @@
+package no.ntnu.ambulanceallocation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Parses comma separated files on all cores.
+ * <p>
+ * The file is read into memory and split into chunks at line boundaries.
+ * Every chunk is parsed on its own by a {@link RowParser} into a chunk-local
+ * result, and the results are returned in file order, so the output does not
+ * depend on the number of threads. Fields are parsed straight from the bytes
+ * through a reused {@link Row}, without creating Strings.
+ * <p>
+ * Parsers run on worker threads, so they must not touch classes whose static
+ * initialization is in progress on the calling thread. In particular, a parser
+ * used while loading a class should be a nested class of it rather than a
+ * lambda, and must not read its static fields.
+ */
+public final class ChunkedCSVReader {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 18;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ChunkedCSVReader() {
+    }
+
+    public interface RowParser<C> {
+
+        C newChunk();
+
+        // Parses the row into the chunk, or returns false to skip it
+        boolean parse(Row row, C chunk);
+
+    }
+
+    public record Result<C>(List<C> chunks, int parsedLines, int skippedLines) {
+    }
+
+    public static <C> Result<C> read(Path file, int headerLines, RowParser<C> parser) throws IOException {
+        return read(Files.readAllBytes(file), headerLines, parser);
+    }
+
+    public static <C> Result<C> read(InputStream inputStream, int headerLines, RowParser<C> parser)
+            throws IOException {
+        return read(inputStream.readAllBytes(), headerLines, parser);
+    }
+
+    // Empty lines are ignored and not counted as skipped
+    public static <C> Result<C> read(byte[] bytes, int headerLines, RowParser<C> parser) {
+        int start = 0;
+        for (int i = 0; i < headerLines && start < bytes.length; i++) {
+            start = nextLine(bytes, start);
+        }
+        int[] boundaries = findBoundaries(bytes, start);
+
+        List<ChunkResult<C>> results = IntStream.range(0, boundaries.length - 1)
+                .parallel()
+                .mapToObj(i -> parseChunk(bytes, boundaries[i], boundaries[i + 1], parser))
+                .toList();
+
+        List<C> chunks = new ArrayList<>(results.size());
+        int parsedLines = 0;
+        int skippedLines = 0;
+        for (ChunkResult<C> result : results) {
+            chunks.add(result.chunk());
+            parsedLines += result.parsedLines();
+            skippedLines += result.skippedLines();
+        }
+        return new Result<>(chunks, parsedLines, skippedLines);
+    }
+
+    private record ChunkResult<C>(C chunk, int parsedLines, int skippedLines) {
+    }
+
+    private static int[] findBoundaries(byte[] bytes, int start) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int length = bytes.length - start;
+        int chunks = Math.max(1, Math.min(threads * CHUNKS_PER_THREAD, length / MIN_CHUNK_SIZE));
+
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        for (int i = 1; i < chunks; i++) {
+            int boundary = nextLine(bytes, start + (int) ((long) length * i / chunks));
+            if (boundary > boundaries.get(boundaries.size() - 1) && boundary < bytes.length) {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(bytes.length);
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Position after the next line break at or after position
+    private static int nextLine(byte[] bytes, int position) {
+        while (position < bytes.length && bytes[position] != '\n') {
+            position++;
+        }
+        return Math.min(bytes.length, position + 1);
+    }
+
+    private static <C> ChunkResult<C> parseChunk(byte[] bytes, int start, int end, RowParser<C> parser) {
+        C chunk = parser.newChunk();
+        Row row = new Row(bytes);
+        int parsedLines = 0;
+        int skippedLines = 0;
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                row.reset(lineStart, lineEnd);
+                if (parser.parse(row, chunk)) {
+                    parsedLines++;
+                } else {
+                    skippedLines++;
+                }
+            }
+            lineStart = next;
+        }
+        return new ChunkResult<>(chunk, parsedLines, skippedLines);
+    }
+
+    /**
+     * The fields of one line. Only valid during the call to
+     * {@link RowParser#parse}, as the row is reused for the next line.
+     */
+    public static final class Row {
+
+        private static final long MAX_EXACT_MANTISSA = 1L << 53;
+        private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+        private final byte[] bytes;
+        private int[] fieldStarts = new int[16];
+        private int[] fieldEnds = new int[16];
+        private int fieldCount;
+
+        private Row(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private void reset(int start, int end) {
+            fieldCount = 0;
+            int fieldStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || bytes[i] == ',') {
+                    if (fieldCount == fieldStarts.length) {
+                        fieldStarts = Arrays.copyOf(fieldStarts, 2 * fieldCount);
+                        fieldEnds = Arrays.copyOf(fieldEnds, 2 * fieldCount);
+                    }
+                    fieldStarts[fieldCount] = fieldStart;
+                    fieldEnds[fieldCount] = i;
+                    fieldCount++;
+                    fieldStart = i + 1;
+                }
+            }
+        }
+
+        public int fieldCount() {
+            return fieldCount;
+        }
+
+        public boolean isBlank(int field) {
+            for (int i = start(field); i < fieldEnds[field]; i++) {
+                if (!Character.isWhitespace(bytes[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean fieldEquals(int field, String value) {
+            int start = start(field);
+            if (fieldEnds[field] - start != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (bytes[start + i] != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public String getString(int field) {
+            return new String(bytes, start(field), fieldEnds[field] - start(field), StandardCharsets.UTF_8);
+        }
+
+        public int parseInt(int field) {
+            return Math.toIntExact(parseLong(field));
+        }
+
+        public long parseLong(int field) {
+            int i = start(field);
+            int end = fieldEnds[field];
+            boolean negative = i < end && bytes[i] == '-';
+            if (negative || (i < end && bytes[i] == '+')) {
+                i++;
+            }
+            if (i == end) {
+                throw numberFormatException(field);
+            }
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw numberFormatException(field);
+                }
+                value = Math.addExact(Math.multiplyExact(value, 10), digit);
+            }
+            return negative ? -value : value;
+        }
+
+        // Exact for decimals with at most 53 bits of digits, which covers the
+        // coordinates in our files; anything else goes through Double.parseDouble
+        public double parseDouble(int field) {
+            int i = start(field);
+            int end = fieldEnds[field];
+            boolean negative = i < end && bytes[i] == '-';
+            if (negative || (i < end && bytes[i] == '+')) {
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; i < end; i++) {
+                byte b = bytes[i];
+                if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                    continue;
+                }
+                int digit = b - '0';
+                if (digit < 0 || digit > 9 || mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return Double.parseDouble(getString(field).trim());
+                }
+                mantissa = 10 * mantissa + digit;
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            }
+            if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+                return Double.parseDouble(getString(field).trim());
+            }
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+
+        // Seconds since the epoch of a yyyy-MM-dd HH:mm:ss date time, taken as UTC
+        public long parseDateTime(int field) {
+            int i = start(field);
+            if (fieldEnds[field] - i != 19 || bytes[i + 4] != '-' || bytes[i + 7] != '-' || bytes[i + 10] != ' '
+                    || bytes[i + 13] != ':' || bytes[i + 16] != ':') {
+                throw dateTimeException(field);
+            }
+            int year = digits(field, i, 4);
+            int month = digits(field, i + 5, 2);
+            int day = digits(field, i + 8, 2);
+            int hour = digits(field, i + 11, 2);
+            int minute = digits(field, i + 14, 2);
+            int second = digits(field, i + 17, 2);
+            if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour > 23
+                    || minute > 59 || second > 59) {
+                throw dateTimeException(field);
+            }
+            return daysSinceEpoch(year, month, day) * 86_400L + hour * 3_600 + minute * 60 + second;
+        }
+
+        private int start(int field) {
+            if (field >= fieldCount) {
+                throw new IndexOutOfBoundsException("Field " + field + " of a row with " + fieldCount + " fields");
+            }
+            return fieldStarts[field];
+        }
+
+        private int digits(int field, int position, int length) {
+            int value = 0;
+            for (int i = position; i < position + length; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw dateTimeException(field);
+                }
+                value = 10 * value + digit;
+            }
+            return value;
+        }
+
+        private static int lengthOfMonth(int year, int month) {
+            return switch (month) {
+                case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+                case 4, 6, 9, 11 -> 30;
+                default -> 31;
+            };
+        }
+
+        // Days from 1970-01-01 in the proleptic Gregorian calendar
+        private static long daysSinceEpoch(int year, int month, int day) {
+            int y = month <= 2 ? year - 1 : year;
+            int era = Math.floorDiv(y, 400);
+            int yearOfEra = y - era * 400;
+            int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146_097L + dayOfEra - 719_468;
+        }
+
+        private NumberFormatException numberFormatException(int field) {
+            return new NumberFormatException("For input string: \"" + getString(field) + "\"");
+        }
+
+        private IllegalArgumentException dateTimeException(int field) {
+            return new IllegalArgumentException("Invalid date time: \"" + getString(field) + "\"");
+        }
+
+    }
+
+}
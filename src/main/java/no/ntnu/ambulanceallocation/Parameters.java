@@ -19,6 +19,13 @@ public final class Parameters {
     public static final LocalTime NIGHT_SHIFT_START = LocalTime.of(20, 0);
     public static final DispatchPolicy DISPATCH_POLICY = DispatchPolicy.Fastest;
     public static final int UPDATE_LOCATION_PERIOD = 5; // minutes
+    public static boolean LAZY_PATH_LOADING = false; // read route paths from od.bin on first use
+    public static int PATH_CACHE_SIZE = 256; // origins
+    public static boolean QUANTIZED_TRAVEL_TIMES = false; // 16-bit off-heap travel times for large grids
+    public static boolean REBUILD_INCIDENT_CACHE = false; // reparse incidents.csv even if incidents.bin is current
+    public static boolean USE_INCIDENT_ARCHIVE = false; // stream simulation windows from the monthly archive
+    public static boolean SIMULATION_CHECKPOINTS = false; // resume optimizer runs from shared shift changes
+    public static boolean ORDER_SIMULTANEOUS_EVENTS_BY_TYPE = false; // instead of by when they were scheduled
 
     // Average week (Week 2)
     public static final LocalDateTime START_DATE_TIME = LocalDateTime.of(2018, 1, 8, 0, 0, 0);
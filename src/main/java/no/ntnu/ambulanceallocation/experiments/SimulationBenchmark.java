@@ -0,0 +1,129 @@
+package no.ntnu.ambulanceallocation.experiments;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.initializer.Random;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+
+/**
+ * Measures the throughput of the simulation kernel in events per second and
+ * the bytes it allocates per event, by simulating the default week for random
+ * allocations. The first runs warm up the JIT and the caches of incidents and
+ * travel times and are not measured.
+ * <p>
+ * Arguments: warmup=number of warmup runs, runs=number of measured runs,
+ * reuse=whether to reuse the simulation of the thread as the optimizers do
+ * (true) or create a new one for every run (false).
+ */
+public class SimulationBenchmark extends Experiment {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulationBenchmark.class);
+
+    private final Result runs = new Result();
+    private final int warmupRuns;
+    private final int measuredRuns;
+    private final boolean reuseSimulation;
+
+    public SimulationBenchmark(int warmupRuns, int measuredRuns, boolean reuseSimulation) {
+        this.warmupRuns = warmupRuns;
+        this.measuredRuns = measuredRuns;
+        this.reuseSimulation = reuseSimulation;
+    }
+
+    @Override
+    void run() {
+        Config config = Config.defaultConfig();
+        Random initializer = new Random();
+
+        for (int i = 0; i < warmupRuns; i++) {
+            simulate(config, initializer);
+        }
+
+        List<Long> events = new ArrayList<>();
+        List<Double> seconds = new ArrayList<>();
+        List<Double> eventsPerSecond = new ArrayList<>();
+        List<Long> allocatedBytes = new ArrayList<>();
+        List<Double> bytesPerEvent = new ArrayList<>();
+        long totalEvents = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < measuredRuns; i++) {
+            Allocation allocation = randomAllocation(initializer);
+            long startBytes = allocatedBytes();
+            long start = System.nanoTime();
+            Simulation simulation = simulate(config, allocation);
+            long nanos = System.nanoTime() - start;
+            long bytes = allocatedBytes() - startBytes;
+
+            events.add(simulation.getProcessedEvents());
+            seconds.add(nanos / 1e9);
+            eventsPerSecond.add(simulation.getProcessedEvents() / (nanos / 1e9));
+            allocatedBytes.add(bytes);
+            bytesPerEvent.add((double) bytes / simulation.getProcessedEvents());
+            totalEvents += simulation.getProcessedEvents();
+            totalNanos += nanos;
+            totalBytes += bytes;
+        }
+        runs.saveColumn("Events", events);
+        runs.saveColumn("Seconds", seconds);
+        runs.saveColumn("Events per second", eventsPerSecond);
+        runs.saveColumn("Allocated bytes", allocatedBytes);
+        runs.saveColumn("Allocated bytes per event", bytesPerEvent);
+
+        logger.info("Simulated {} events in {} runs at {} events per second.", totalEvents, measuredRuns,
+                Math.round(totalEvents / (totalNanos / 1e9)));
+        logger.info("Allocated {} bytes per run and {} bytes per event.", totalBytes / measuredRuns,
+                Math.round((double) totalBytes / totalEvents));
+    }
+
+    private void simulate(Config config, Random initializer) {
+        simulate(config, randomAllocation(initializer));
+    }
+
+    private Simulation simulate(Config config, Allocation allocation) {
+        Simulation simulation = reuseSimulation ? Simulation.forCurrentThread(config) : new Simulation(config);
+        simulation.simulate(allocation);
+        return simulation;
+    }
+
+    private static Allocation randomAllocation(Random initializer) {
+        return new Allocation(List.of(
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_DAY),
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_NIGHT)));
+    }
+
+    // Bytes allocated by this thread so far, or 0 if the JVM does not tell
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemorySupported()) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    @Override
+    void saveResults() {
+        runs.saveResults("simulation_benchmark_runs");
+    }
+
+    public static void main(String[] args) {
+        setParameterValues(args);
+        int warmupRuns = Integer.parseInt(parameters.getOrDefault("warmup", "5"));
+        int measuredRuns = Integer.parseInt(parameters.getOrDefault("runs", "20"));
+        boolean reuseSimulation = Boolean.parseBoolean(parameters.getOrDefault("reuse", "true"));
+        logger.info("Running simulation benchmark ...");
+        SimulationBenchmark benchmark = new SimulationBenchmark(warmupRuns, measuredRuns, reuseSimulation);
+        benchmark.run();
+        benchmark.saveResults();
+        logger.info("Simulation benchmark completed successfully.");
+    }
+
+}
@@ -1,20 +1,29 @@
 package no.ntnu.ambulanceallocation.optimization;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.DoubleAccumulator;
 import java.util.stream.Stream;
 
 import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
 import no.ntnu.ambulanceallocation.simulation.Config;
 import no.ntnu.ambulanceallocation.simulation.ResponseTimes;
+import no.ntnu.ambulanceallocation.simulation.ShiftType;
 import no.ntnu.ambulanceallocation.simulation.Simulation;
 
 public abstract class Solution implements Comparable<Solution> {
 
+    private static final int BATCHES_PER_THREAD = 4;
+
     private Allocation allocation;
     private double fitness = 0.0;
     private boolean hasAllocationChanged = true;
+    // Set if the fitness is only a lower bound of it, see getFitness(double)
+    private boolean isFitnessLowerBound = false;
     private Config config = Config.defaultConfig();
 
     public Solution(Initializer initializer, Config config) {
@@ -37,6 +46,7 @@ public abstract class Solution implements Comparable<Solution> {
         allocation = new Allocation(solution.allocation);
         fitness = solution.fitness;
         hasAllocationChanged = solution.hasAllocationChanged;
+        isFitnessLowerBound = solution.isFitnessLowerBound;
     }
 
     public void copy(Solution solution) {
@@ -44,19 +54,112 @@ public abstract class Solution implements Comparable<Solution> {
         allocation = new Allocation(solution.allocation);
         fitness = solution.fitness;
         hasAllocationChanged = solution.hasAllocationChanged;
+        isFitnessLowerBound = solution.isFitnessLowerBound;
     }
 
     public double getFitness() {
-        if (hasAllocationChanged) {
-            calculateFitness();
+        return getFitness(Double.POSITIVE_INFINITY);
+    }
+
+    // The fitness if it is no more than the bound. Otherwise the simulation may
+    // be stopped early and only give a lower bound of the fitness that is above
+    // the bound, which is kept until the fitness is asked for with a bound at
+    // or above it.
+    public double getFitness(double bound) {
+        if (needsFitness(bound)) {
+            calculateFitness(bound);
             hasAllocationChanged = false;
         }
         return fitness;
     }
 
-    private void calculateFitness() {
-        ResponseTimes responseTimes = Simulation.withConfig(config).simulate(allocation);
-        fitness = responseTimes.average();
+    private boolean needsFitness(double bound) {
+        return hasAllocationChanged || (isFitnessLowerBound && fitness <= bound);
+    }
+
+    public boolean isFitnessLowerBound() {
+        return isFitnessLowerBound;
+    }
+
+    private void calculateFitness(double bound) {
+        ResponseTimes responseTimes = Simulation.forCurrentThread(config).simulate(allocation, bound);
+        isFitnessLowerBound = responseTimes.isWorseThanBound();
+        fitness = isFitnessLowerBound ? responseTimes.getAverageLowerBound() : responseTimes.average();
+    }
+
+    // The first of the solutions with the least fitness, as after sorting them.
+    // Each is only simulated until it can no longer beat the best of those done
+    // before it, so the others may be left with a lower bound of their fitness,
+    // but never one that ties with the returned solution.
+    public static <T extends Solution> T fittest(List<T> solutions, boolean parallel) {
+        DoubleAccumulator bestFitness = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+        evaluate(solutions, parallel, bestFitness);
+        T fittest = null;
+        for (T solution : solutions) {
+            if (fittest == null || ((Solution) solution).fitness < ((Solution) fittest).fitness) {
+                fittest = solution;
+            }
+        }
+        return fittest;
+    }
+
+    // Simulates the solutions whose fitness is not known yet
+    public static void evaluate(List<? extends Solution> solutions, boolean parallel) {
+        evaluate(solutions, parallel, null);
+    }
+
+    // A simulation only depends on the number of ambulances at each base
+    // station, so solutions with the same counts are simulated once. The others
+    // are simulated in batches on one thread each, in order of the counts of the
+    // shift the simulated period starts in, so that a run can resume from the
+    // last one where they stop making a difference, see Simulation. Each is
+    // simulated with the best fitness found so far as bound, if given.
+    private static void evaluate(List<? extends Solution> solutions, boolean parallel,
+            DoubleAccumulator bestFitness) {
+        Map<List<Object>, List<List<Solution>>> startingShiftCounts = new LinkedHashMap<>();
+        Map<List<Object>, List<Solution>> shiftCounts = new LinkedHashMap<>();
+        for (Solution solution : solutions) {
+            List<Integer> day = solution.allocation.getDayShiftAllocationSorted();
+            List<Integer> night = solution.allocation.getNightShiftAllocationSorted();
+            List<Solution> sameCounts = shiftCounts.get(List.of(solution.config, day, night));
+            if (sameCounts == null) {
+                sameCounts = new ArrayList<>();
+                shiftCounts.put(List.of(solution.config, day, night), sameCounts);
+                boolean startsWithDay = ShiftType.get(solution.config.START_DATE_TIME()) == ShiftType.DAY;
+                startingShiftCounts.computeIfAbsent(List.of(solution.config, startsWithDay ? day : night),
+                        counts -> new ArrayList<>()).add(sameCounts);
+            }
+            sameCounts.add(solution);
+        }
+        List<List<Solution>> runs = startingShiftCounts.values().stream().flatMap(List::stream).toList();
+
+        int batchSize = runs.size();
+        if (parallel) {
+            int batches = ForkJoinPool.getCommonPoolParallelism() * BATCHES_PER_THREAD;
+            batchSize = Math.max(1, (runs.size() + batches - 1) / batches);
+        }
+        List<List<List<Solution>>> batches = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += batchSize) {
+            batches.add(runs.subList(i, Math.min(i + batchSize, runs.size())));
+        }
+        (parallel ? batches.parallelStream() : batches.stream())
+                .forEach(batch -> batch.forEach(sameCounts -> evaluate(sameCounts, bestFitness)));
+    }
+
+    private static void evaluate(List<Solution> sameCounts, DoubleAccumulator bestFitness) {
+        Solution simulated = sameCounts.get(0);
+        double bound = bestFitness == null ? Double.POSITIVE_INFINITY : bestFitness.get();
+        simulated.getFitness(bound);
+        for (Solution solution : sameCounts) {
+            if (solution.needsFitness(bound)) {
+                solution.fitness = simulated.fitness;
+                solution.isFitnessLowerBound = simulated.isFitnessLowerBound;
+                solution.hasAllocationChanged = false;
+            }
+            if (bestFitness != null) {
+                bestFitness.accumulate(solution.fitness);
+            }
+        }
     }
 
     public Allocation getAllocation() {
@@ -73,6 +176,7 @@ public abstract class Solution implements Comparable<Solution> {
 
     protected void setFitness(double fitness) {
         this.fitness = fitness;
+        isFitnessLowerBound = false;
     }
 
     protected void setAllocation(int subAllocation, int variable, int variableValue) {
@@ -89,7 +193,7 @@ public abstract class Solution implements Comparable<Solution> {
 
     @Override
     public int compareTo(Solution otherSolution) {
-        return Comparator.comparing(Solution::getFitness).compare(this, otherSolution);
+        return Double.compare(getFitness(), otherSolution.getFitness());
     }
 
     @Override
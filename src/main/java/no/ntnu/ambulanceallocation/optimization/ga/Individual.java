@@ -2,7 +2,6 @@ package no.ntnu.ambulanceallocation.optimization.ga;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -195,7 +194,7 @@ public class Individual extends Solution {
             }
             neighborhood.add(new Individual(this, chromosomeNumber, overproportionateIndex, baseStationId));
         }
-        Individual bestNeighbor = neighborhood.stream().min(Comparator.comparingDouble(Individual::getFitness)).get();
+        Individual bestNeighbor = fittest(neighborhood, false);
 
         return bestNeighbor;
     }
@@ -221,7 +220,7 @@ public class Individual extends Solution {
                     .add(new Individual(this, chromosomeNumber, baseStationIndex,
                             underproportionateStation));
         }
-        Individual bestNeighbor = neighborhood.stream().min(Comparator.comparingDouble(Individual::getFitness)).get();
+        Individual bestNeighbor = fittest(neighborhood, false);
 
         return bestNeighbor;
     }
@@ -95,7 +95,7 @@ public class Population implements Iterable<Individual> {
     }
 
     public void evaluate() {
-        population.parallelStream().forEach(Solution::getFitness);
+        Solution.evaluate(population, true);
     }
 
     public Tuple<Individual> selection(int tournamentSize) {
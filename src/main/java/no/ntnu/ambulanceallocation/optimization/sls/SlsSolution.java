@@ -10,7 +10,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -66,9 +65,7 @@ public class SlsSolution extends Solution {
             case LAZY -> getLazyNeighborhood(neighborhoodSize);
         };
         logger.info("Neighbourhood size was: {}", neighborhood.size());
-        neighborhood.parallelStream().forEach(Solution::getFitness);
-        Collections.sort(neighborhood);
-        return neighborhood.get(0);
+        return fittest(neighborhood, true);
     }
 
     public void restartStep() {
@@ -1,133 +1,77 @@
 package no.ntnu.ambulanceallocation.simulation;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Collection;
 import java.util.Comparator;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentStore;
 
-public class Ambulance {
+// A read-only view of one ambulance of a fleet, which holds its state
+public final class Ambulance {
 
-    // Only used for visualization
-    private static LocalDateTime currentGlocalTime;
-    private LocalDateTime travelStartTime;
-    private Coordinate originatingLocation;
-
-    private final BaseStation baseStation;
-
-    private Coordinate destination = null;
-    private int currentTimeToDestination = 0;
-    private Coordinate currentLocation;
-    private int currentLocationIndex = 0;
-    private Coordinate hospitalLocation = null;
-    private boolean isOffDuty = true;
-
-    private Incident incident;
-
-    public Ambulance(BaseStation baseStation) {
-        this.baseStation = baseStation;
-        this.currentLocation = baseStation.getCoordinate();
-    }
-
-    public static List<Ambulance> generateFromAllocation(Collection<Integer> allocation) {
-        return allocation
-                .stream()
-                .map(id -> new Ambulance(BaseStation.get(id)))
-                .collect(Collectors.toList());
-    }
+    private final FleetState fleet;
+    private final int id;
 
-    public static void setCurrentGlobalTime(LocalDateTime time) {
-        currentGlocalTime = time;
-    }
-
-    public void startNewShift() {
-        isOffDuty = false;
-    }
-
-    public void finishShift() {
-        isOffDuty = true;
+    Ambulance(FleetState fleet, int id) {
+        this.fleet = fleet;
+        this.id = id;
     }
 
     public boolean isOffDuty() {
-        return isOffDuty;
+        return fleet.isOffDuty(id);
     }
 
     public boolean isAtBaseStation() {
-        return currentLocation.equals(baseStation.getCoordinate());
+        return fleet.isAtBaseStation(id);
     }
 
     public BaseStation getBaseStation() {
-        return baseStation;
+        return fleet.getBaseStation(id);
     }
 
     public Coordinate getBaseStationLocation() {
-        return baseStation.getCoordinate();
+        return getBaseStation().getCoordinate();
     }
 
     public Coordinate getHospitalLocation() {
-        return hospitalLocation;
+        return fleet.getHospitalLocation(id);
     }
 
     public Coordinate getDestination() {
-        return destination;
+        return fleet.getDestination(id);
     }
 
     public Coordinate getCurrentLocation() {
-        return currentLocation;
+        return fleet.getLocation(id);
     }
 
     public Incident getIncident() {
-        return incident;
+        return fleet.getIncident(id);
     }
 
     public boolean isAvailable() {
-        return incident == null && !isOffDuty;
+        return fleet.isAvailable(id);
     }
 
     public boolean isTransport() {
-        return hospitalLocation != null;
+        return fleet.isTransport(id);
     }
 
     public boolean isNonTransport() {
         return !isTransport();
     }
 
-    public void flagAsAvailable() {
-        incident = null;
-        hospitalLocation = null;
-        destination = baseStation.getCoordinate();
-        travelStartTime = currentGlocalTime;
-        originatingLocation = currentLocation;
-        currentLocationIndex = 0;
-        currentTimeToDestination = currentLocation.timeTo(destination);
-    }
-
-    public void dispatch(Incident incident) {
-        this.incident = incident;
-        travelStartTime = currentGlocalTime;
-        originatingLocation = currentLocation;
-        currentLocationIndex = 0;
-        destination = new Coordinate(incident.getLocation());
-    }
-
-    public void dispatchTransport(Incident incident, Coordinate hospitalLocation) {
-        dispatch(incident);
-        this.hospitalLocation = hospitalLocation;
-    }
-
     // Only used for visualization
     public Coordinate getCurrentLocationInteractive(LocalDateTime currentTime) {
-        if (isAvailable()) {
-            return currentLocation;
-        }
-        if (travelStartTime == null) {
+        Coordinate currentLocation = getCurrentLocation();
+        if (isAvailable() || fleet.getTravelStart(id) < 0) {
             return currentLocation;
         }
-        int elapsedTime = (int) ChronoUnit.SECONDS.between(travelStartTime, currentTime);
+        Coordinate originatingLocation = fleet.getOrigin(id);
+        Coordinate destination = getDestination();
+        int elapsedTime = (int) (IncidentStore.toEpochSecond(currentTime) - fleet.getStartEpochSecond()
+                - fleet.getTravelStart(id));
         if (originatingLocation.timeTo(destination) - elapsedTime <= 0) {
             return destination;
         }
@@ -149,42 +93,12 @@ public class Ambulance {
         return currentLocation;
     }
 
-    public void updateLocation(int timePeriod) {
-        currentTimeToDestination -= timePeriod * 60;
-        if (currentTimeToDestination <= 0) {
-            currentLocation = destination;
-            currentTimeToDestination = 0;
-        } else {
-            Coordinate[] path = originatingLocation.pathTo(destination);
-            if (path != null) {
-                while (currentLocationIndex < path.length - 1
-                        && path[currentLocationIndex + 1].timeTo(destination) > currentTimeToDestination) {
-                    currentLocationIndex++;
-                }
-
-                currentLocation = path[currentLocationIndex];
-            }
-        }
-    }
-
     public boolean endOfJourney() {
-        return currentLocation.equals(destination);
-    }
-
-    public void transport() {
-        currentLocationIndex = 0;
-        travelStartTime = currentGlocalTime;
-        originatingLocation = currentLocation;
-        destination = new Coordinate(hospitalLocation);
-    }
-
-    public void arriveAtHospital() {
-        currentLocationIndex = 0;
-        currentLocation = new Coordinate(hospitalLocation);
+        return getCurrentLocation().equals(getDestination());
     }
 
     public int timeTo(Incident incident) {
-        return (int) Math.round(this.currentLocation.timeTo(incident.getLocation()));
+        return fleet.timeTo(id, incident);
     }
 
     public static Comparator<Ambulance> closestTo(Incident incident) {
@@ -194,6 +108,6 @@ public class Ambulance {
     @Override
     public String toString() {
         return String.format("Ambulance[baseStation=%s, destination=%s, currentLocation=%s, hospitalLocation=%s]",
-                baseStation, destination, currentLocation, hospitalLocation);
+                getBaseStation(), getDestination(), getCurrentLocation(), getHospitalLocation());
     }
 }
@@ -1,6 +1,7 @@
 package no.ntnu.ambulanceallocation.simulation;
 
 import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
 
 import java.util.Arrays;
 import java.util.List;
@@ -35,7 +36,7 @@ public enum BaseStation {
     BaseStation(int id, boolean isStandbyPoint, int easting, int northing, int population) {
         this.id = id;
         this.isStandbyPoint = isStandbyPoint;
-        coordinate = new Coordinate(easting, northing);
+        coordinate = DistanceIO.coordinateRegistry.intern(easting, northing);
         this.population = population;
     }
 
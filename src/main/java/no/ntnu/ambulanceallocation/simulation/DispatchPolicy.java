@@ -2,30 +2,35 @@ package no.ntnu.ambulanceallocation.simulation;
 
 import java.util.Comparator;
 
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
 
 public enum DispatchPolicy {
     Euclidean {
         @Override
-        public Comparator<Ambulance> useOn(Incident incident) {
-            return Comparator.comparingDouble(
-                    ambulance -> ambulance.getCurrentLocation().euclideanDistanceTo(incident.getLocation()));
+        public double cost(Coordinate location, Coordinate destination) {
+            return location.euclideanDistanceTo(destination);
         }
     },
     Manhattan {
         @Override
-        public Comparator<Ambulance> useOn(Incident incident) {
-            return Comparator.comparingDouble(
-                    ambulance -> ambulance.getCurrentLocation().manhattanDistanceTo(incident.getLocation()));
+        public double cost(Coordinate location, Coordinate destination) {
+            return location.manhattanDistanceTo(destination);
         }
     },
     Fastest {
         @Override
-        public Comparator<Ambulance> useOn(Incident incident) {
-            return Comparator
-                    .comparingDouble(ambulance -> ambulance.getCurrentLocation().timeTo(incident.getLocation()));
+        public double cost(Coordinate location, Coordinate destination) {
+            return location.timeTo(destination);
         }
     };
 
-    public abstract Comparator<Ambulance> useOn(Incident incident);
+    // Cost of sending an ambulance from the location to the destination, the
+    // cheapest ambulance being dispatched first
+    public abstract double cost(Coordinate location, Coordinate destination);
+
+    public Comparator<Ambulance> useOn(Incident incident) {
+        Coordinate destination = incident.getLocation();
+        return Comparator.comparingDouble(ambulance -> cost(ambulance.getCurrentLocation(), destination));
+    }
 }
@@ -0,0 +1,689 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import no.ntnu.ambulanceallocation.simulation.event.EventQueue;
+import no.ntnu.ambulanceallocation.simulation.event.EventQueue.Type;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+
+/**
+ * The ambulances of a simulation, kept as parallel arrays indexed by the id of
+ * the ambulance, with indices that are kept up to date on every change of
+ * state, so the simulation never scans the whole fleet and handling an event
+ * does not allocate. Locations are the coordinates of the grid and incidents,
+ * so they are shared rather than copied. {@link Ambulance} is a read-only view
+ * of one ambulance for the visualization.
+ * <p>
+ * The ambulances of each base station are contiguous and in the order of
+ * {@link BaseStation#values()}. Every query returns ambulances in this order,
+ * which is the order the simulation has always considered them in.
+ * <p>
+ * Available ambulances idle at their base station are indexed by station, so
+ * dispatch can walk the stations from the cheapest and stop once the stations
+ * left cannot hold a closer ambulance.
+ * <p>
+ * An ambulance on its way is moved by a location update every update period
+ * until it reaches its destination. When simultaneous events are ordered by
+ * type, the updates are not events: the updates an ambulance is due up to the
+ * current event are applied whenever its position is needed, in the order
+ * they would have had in the event queue, so an ambulance nobody asks about is
+ * not moved at all. Otherwise the simulation schedules each update as an event
+ * and moves the ambulance with {@link #moveAlong}.
+ */
+final class FleetState {
+
+    private static final BaseStation[] baseStations = BaseStation.values();
+    private static final int NONE = -1;
+
+    private final int updateLocationPeriod;
+    private final int[] firstAmbulance = new int[baseStations.length + 1];
+    private final List<Ambulance> ambulances = new ArrayList<>();
+    private int size;
+    private long startEpochSecond;
+
+    // The arrays below hold at least size ambulances and only grow, so a fleet
+    // reset for a new allocation does not allocate
+    private byte[] baseStation = new byte[0];
+    private boolean[] offDuty = new boolean[0];
+    private Incident[] incident = new Incident[0];
+    private Coordinate[] location = new Coordinate[0];
+    private Coordinate[] origin = new Coordinate[0];
+    private Coordinate[] destination = new Coordinate[0];
+    private Coordinate[] hospital = new Coordinate[0];
+    // From origin to destination, found again on the first location update of
+    // each journey
+    private Route[] route = new Route[0];
+    private int[] timeToDestination = new int[0];
+    // Time the current journey started, only used for visualization
+    private int[] travelStart = new int[0];
+
+    private final BitSet available = new BitSet();
+    private final BitSet idleAtBaseStation = new BitSet();
+    private final BitSet awayFromBaseStation = new BitSet();
+    private final int[] availableAtBaseStation = new int[baseStations.length];
+    private int availableCount = 0;
+
+    // Incidents with dispatched ambulances in an open addressing table by
+    // identity, each with the first of its ambulances in fleet order and the
+    // others following in nextAssigned. There are never more incidents than
+    // ambulances, so the table is at most half full.
+    private Incident[] assignedIncidents = new Incident[1];
+    private int[] firstAssigned = new int[1];
+    private int[] nextAssigned = new int[0];
+
+    // Times of the next location update of every journey an ambulance is still
+    // being moved along, usually one
+    private int[][] pendingUpdates = new int[0][];
+    private int[] pendingUpdateCounts = new int[0];
+    private long currentEvent;
+
+    private Selection selection = new Selection(0);
+
+    // Per base station, by ordinal, how many of its first ambulances have ever
+    // been on duty and whether it ever had too few to start a shift, see
+    // canTakeStateOf
+    private final int[] usedAtBaseStation = new int[baseStations.length];
+    private final boolean[] shortAtBaseStation = new boolean[baseStations.length];
+
+    // Creates the given number of ambulances at each base station, by ordinal,
+    // all off duty and moved every updateLocationPeriod minutes. Event times
+    // are seconds from startEpochSecond.
+    FleetState(int[] ambulancesPerBaseStation, int updateLocationPeriod, long startEpochSecond) {
+        this.updateLocationPeriod = updateLocationPeriod;
+        reset(ambulancesPerBaseStation, startEpochSecond);
+    }
+
+    // Replaces the fleet with a new one as if created by the constructor,
+    // reusing the arrays of the old one
+    void reset(int[] ambulancesPerBaseStation, long startEpochSecond) {
+        this.startEpochSecond = startEpochSecond;
+        int count = 0;
+        for (BaseStation station : baseStations) {
+            firstAmbulance[station.ordinal()] = count;
+            count += ambulancesPerBaseStation[station.ordinal()];
+        }
+        firstAmbulance[baseStations.length] = count;
+        size = count;
+        ensureCapacity(size);
+
+        for (BaseStation station : baseStations) {
+            for (int id = firstAmbulance[station.ordinal()]; id < firstAmbulance[station.ordinal() + 1]; id++) {
+                resetAmbulance(id, station);
+            }
+        }
+        available.clear();
+        idleAtBaseStation.clear();
+        awayFromBaseStation.clear();
+        Arrays.fill(availableAtBaseStation, 0);
+        availableCount = 0;
+        Arrays.fill(assignedIncidents, null);
+        currentEvent = 0;
+        Arrays.fill(usedAtBaseStation, 0);
+        Arrays.fill(shortAtBaseStation, false);
+    }
+
+    private void resetAmbulance(int id, BaseStation station) {
+        baseStation[id] = (byte) station.ordinal();
+        offDuty[id] = true;
+        incident[id] = null;
+        location[id] = station.getCoordinate();
+        origin[id] = null;
+        destination[id] = null;
+        hospital[id] = null;
+        route[id].clear();
+        timeToDestination[id] = 0;
+        travelStart[id] = NONE;
+        pendingUpdateCounts[id] = 0;
+    }
+
+    // Whether this fleet, as reset, would have come to the state of the other
+    // given the same events. The number of ambulances at a base station only
+    // matters once a shift is short of them there or one is put on duty that
+    // the smaller fleet lacks.
+    boolean canTakeStateOf(FleetState other) {
+        for (int station = 0; station < baseStations.length; station++) {
+            int ambulances = firstAmbulance[station + 1] - firstAmbulance[station];
+            int otherAmbulances = other.firstAmbulance[station + 1] - other.firstAmbulance[station];
+            if (ambulances != otherAmbulances
+                    && (other.shortAtBaseStation[station] || other.usedAtBaseStation[station] > ambulances)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Id in this fleet of the ambulance of the other, the one at the same place
+    // among the ambulances of its base station
+    int idOf(FleetState other, int otherId) {
+        int station = other.baseStation[otherId];
+        return firstAmbulance[station] + otherId - other.firstAmbulance[station];
+    }
+
+    // Becomes a copy of the other fleet, with its number of ambulances at each
+    // base station
+    void copyOf(FleetState other) {
+        System.arraycopy(other.firstAmbulance, 0, firstAmbulance, 0, firstAmbulance.length);
+        size = other.size;
+        ensureCapacity(size);
+        System.arraycopy(other.baseStation, 0, baseStation, 0, size);
+        copyFrom(other);
+    }
+
+    // Takes the state of the other fleet, which this fleet must be able to take,
+    // keeping its own number of ambulances at each base station. The ambulances
+    // the other lacks stay as reset. Routes are found again when next needed.
+    void copyFrom(FleetState other) {
+        startEpochSecond = other.startEpochSecond;
+        for (BaseStation station : baseStations) {
+            int first = firstAmbulance[station.ordinal()];
+            int otherFirst = other.firstAmbulance[station.ordinal()];
+            int otherEnd = other.firstAmbulance[station.ordinal() + 1];
+            for (int id = first; id < firstAmbulance[station.ordinal() + 1]; id++) {
+                int otherId = otherFirst + id - first;
+                if (otherId >= otherEnd) {
+                    resetAmbulance(id, station);
+                    continue;
+                }
+                offDuty[id] = other.offDuty[otherId];
+                incident[id] = other.incident[otherId];
+                location[id] = other.location[otherId];
+                origin[id] = other.origin[otherId];
+                destination[id] = other.destination[otherId];
+                hospital[id] = other.hospital[otherId];
+                route[id].clear();
+                timeToDestination[id] = other.timeToDestination[otherId];
+                travelStart[id] = other.travelStart[otherId];
+                int updates = other.pendingUpdateCounts[otherId];
+                if (pendingUpdates[id].length < updates) {
+                    pendingUpdates[id] = new int[other.pendingUpdates[otherId].length];
+                }
+                System.arraycopy(other.pendingUpdates[otherId], 0, pendingUpdates[id], 0, updates);
+                pendingUpdateCounts[id] = updates;
+                if (incident[id] != null) {
+                    int next = other.nextAssigned[otherId];
+                    nextAssigned[id] = next == NONE ? NONE : idOf(other, next);
+                }
+            }
+        }
+        copyMapped(other, other.available, available);
+        copyMapped(other, other.idleAtBaseStation, idleAtBaseStation);
+        copyMapped(other, other.awayFromBaseStation, awayFromBaseStation);
+        System.arraycopy(other.availableAtBaseStation, 0, availableAtBaseStation, 0, baseStations.length);
+        availableCount = other.availableCount;
+        Arrays.fill(assignedIncidents, null);
+        for (int otherSlot = 0; otherSlot < other.assignedIncidents.length; otherSlot++) {
+            if (other.assignedIncidents[otherSlot] != null) {
+                int slot = findSlot(other.assignedIncidents[otherSlot]);
+                assignedIncidents[slot] = other.assignedIncidents[otherSlot];
+                firstAssigned[slot] = idOf(other, other.firstAssigned[otherSlot]);
+            }
+        }
+        currentEvent = other.currentEvent;
+        System.arraycopy(other.usedAtBaseStation, 0, usedAtBaseStation, 0, baseStations.length);
+        System.arraycopy(other.shortAtBaseStation, 0, shortAtBaseStation, 0, baseStations.length);
+    }
+
+    private void copyMapped(FleetState other, BitSet otherIds, BitSet ids) {
+        ids.clear();
+        for (int otherId = otherIds.nextSetBit(0); otherId >= 0; otherId = otherIds.nextSetBit(otherId + 1)) {
+            ids.set(idOf(other, otherId));
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= baseStation.length) {
+            return;
+        }
+        baseStation = new byte[capacity];
+        offDuty = new boolean[capacity];
+        incident = new Incident[capacity];
+        location = new Coordinate[capacity];
+        origin = new Coordinate[capacity];
+        destination = new Coordinate[capacity];
+        hospital = new Coordinate[capacity];
+        timeToDestination = new int[capacity];
+        travelStart = new int[capacity];
+        pendingUpdateCounts = new int[capacity];
+        nextAssigned = new int[capacity];
+        selection = new Selection(capacity);
+
+        int tableCapacity = Integer.highestOneBit(capacity) << 2;
+        assignedIncidents = new Incident[tableCapacity];
+        firstAssigned = new int[tableCapacity];
+
+        int previousCapacity = route.length;
+        route = Arrays.copyOf(route, capacity);
+        pendingUpdates = Arrays.copyOf(pendingUpdates, capacity);
+        for (int id = previousCapacity; id < capacity; id++) {
+            route[id] = new Route();
+            pendingUpdates[id] = new int[2];
+            ambulances.add(new Ambulance(this, id));
+        }
+    }
+
+    // Sets the event being handled, see EventQueue
+    void advanceTo(long event) {
+        currentEvent = event;
+    }
+
+    List<Ambulance> getAmbulances() {
+        return Collections.unmodifiableList(ambulances.subList(0, size));
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getStartEpochSecond() {
+        return startEpochSecond;
+    }
+
+    // The state of an ambulance may lag behind the location updates it is due
+    // until its next change of state
+
+    BaseStation getBaseStation(int id) {
+        return baseStations[baseStation[id]];
+    }
+
+    boolean isOffDuty(int id) {
+        return offDuty[id];
+    }
+
+    boolean isAvailable(int id) {
+        return incident[id] == null && !offDuty[id];
+    }
+
+    boolean isTransport(int id) {
+        return hospital[id] != null;
+    }
+
+    boolean isAtBaseStation(int id) {
+        return location[id].equals(getBaseStation(id).getCoordinate());
+    }
+
+    Incident getIncident(int id) {
+        return incident[id];
+    }
+
+    Coordinate getLocation(int id) {
+        return location[id];
+    }
+
+    Coordinate getOrigin(int id) {
+        return origin[id];
+    }
+
+    Coordinate getDestination(int id) {
+        return destination[id];
+    }
+
+    Coordinate getHospitalLocation(int id) {
+        return hospital[id];
+    }
+
+    // Time the current journey of the ambulance started, or -1 if it has not
+    // been anywhere
+    int getTravelStart(int id) {
+        return travelStart[id];
+    }
+
+    int timeTo(int id, Incident incident) {
+        return location[id].timeTo(incident.getLocation());
+    }
+
+    int getAvailableCount() {
+        return availableCount;
+    }
+
+    int getAvailableCount(BaseStation baseStation) {
+        return availableAtBaseStation[baseStation.ordinal()];
+    }
+
+    // Selects the count available ambulances cheapest to dispatch to the
+    // location by the policy, cheapest first and with equal costs in fleet
+    // order, the same as the start of a stable sort of all available
+    // ambulances. Returns how many were selected, see getSelected.
+    int selectNearestAvailable(DispatchPolicy policy, Coordinate location, int count) {
+        selection.clear(Math.min(count, availableCount));
+        if (selection.capacity == 0) {
+            return 0;
+        }
+        NearestBaseStations nearestBaseStations = NearestBaseStations.of(policy);
+        if (!nearestBaseStations.isRanked(location)) {
+            for (int id = available.nextSetBit(0); id >= 0; id = available.nextSetBit(id + 1)) {
+                applyLocationUpdates(id);
+                selection.offer(policy.cost(this.location[id], location), id);
+            }
+            return selection.size;
+        }
+
+        for (int id = awayFromBaseStation.nextSetBit(0); id >= 0; id = awayFromBaseStation.nextSetBit(id + 1)) {
+            applyLocationUpdates(id);
+            updateAvailability(id);
+            if (awayFromBaseStation.get(id)) {
+                selection.offer(policy.cost(this.location[id], location), id);
+            }
+        }
+        for (int k = 0; k < NearestBaseStations.size(); k++) {
+            double cost = nearestBaseStations.getCost(location, k);
+            if (selection.isFull() && selection.lastCost() < cost) {
+                break;
+            }
+            int station = nearestBaseStations.get(location, k).ordinal();
+            int end = firstAmbulance[station + 1];
+            for (int id = idleAtBaseStation.nextSetBit(firstAmbulance[station]); id >= 0
+                    && id < end; id = idleAtBaseStation.nextSetBit(id + 1)) {
+                if (!selection.offer(cost, id)) {
+                    // The remaining ambulances of the station have the same cost
+                    // and higher ids
+                    break;
+                }
+            }
+        }
+        return selection.size;
+    }
+
+    // Id of the i-th ambulance selected by the last selectNearestAvailable
+    int getSelected(int i) {
+        return selection.ids[i];
+    }
+
+    // The cheapest ambulances offered so far, ordered by cost and then id
+    private static final class Selection {
+
+        private final int[] ids;
+        private final double[] costs;
+        private int capacity = 0;
+        private int size = 0;
+
+        private Selection(int maximumCapacity) {
+            ids = new int[maximumCapacity];
+            costs = new double[maximumCapacity];
+        }
+
+        private void clear(int capacity) {
+            this.capacity = Math.max(0, capacity);
+            size = 0;
+        }
+
+        private boolean isFull() {
+            return size == capacity;
+        }
+
+        private double lastCost() {
+            return costs[size - 1];
+        }
+
+        // Returns whether the ambulance was selected
+        private boolean offer(double cost, int id) {
+            int position = size;
+            while (position > 0 && (costs[position - 1] > cost
+                    || (costs[position - 1] == cost && ids[position - 1] > id))) {
+                position--;
+            }
+            if (position == capacity) {
+                return false;
+            }
+            int end = Math.min(size, capacity - 1);
+            System.arraycopy(ids, position, ids, position + 1, end - position);
+            System.arraycopy(costs, position, costs, position + 1, end - position);
+            ids[position] = id;
+            costs[position] = cost;
+            size = Math.min(size + 1, capacity);
+            return true;
+        }
+
+    }
+
+    // Copies the ids of the ambulances dispatched to the incident and not yet
+    // available into ids, in fleet order, and returns how many there are
+    int getAssigned(Incident incident, int[] ids) {
+        int slot = findSlot(incident);
+        int count = 0;
+        if (assignedIncidents[slot] != null) {
+            for (int id = firstAssigned[slot]; id != NONE; id = nextAssigned[id]) {
+                ids[count++] = id;
+            }
+        }
+        return count;
+    }
+
+    // Applies the location updates every ambulance is due
+    void updateLocations() {
+        for (int id = 0; id < size; id++) {
+            applyLocationUpdates(id);
+            updateAvailability(id);
+        }
+    }
+
+    // Moves the ambulance by one update period now and returns whether it is
+    // still on its way, for location updates scheduled as events
+    boolean moveAlong(int id) {
+        updateLocation(id);
+        updateAvailability(id);
+        return !location[id].equals(destination[id]);
+    }
+
+    // Moves the ambulance every update period from the given time until it
+    // reaches its destination
+    void startLocationUpdates(int id, int firstUpdate) {
+        if (pendingUpdateCounts[id] == pendingUpdates[id].length) {
+            pendingUpdates[id] = Arrays.copyOf(pendingUpdates[id], 2 * pendingUpdates[id].length);
+        }
+        pendingUpdates[id][pendingUpdateCounts[id]++] = firstUpdate;
+    }
+
+    // Starts the shift of the first count off duty ambulances of the base station
+    void startShifts(BaseStation baseStation, int count) {
+        int station = baseStation.ordinal();
+        int end = firstAmbulance[station + 1];
+        for (int id = firstAmbulance[station]; id < end && count > 0; id++) {
+            if (offDuty[id]) {
+                startNewShift(id);
+                count--;
+                usedAtBaseStation[station] = Math.max(usedAtBaseStation[station], id - firstAmbulance[station] + 1);
+            }
+        }
+        if (count > 0) {
+            shortAtBaseStation[station] = true;
+        }
+    }
+
+    // Finishes the shift of the first count available ambulances of the base
+    // station and returns how many there were
+    int finishShifts(BaseStation baseStation, int count) {
+        int finished = 0;
+        int end = firstAmbulance[baseStation.ordinal() + 1];
+        for (int id = available.nextSetBit(firstAmbulance[baseStation.ordinal()]); id >= 0 && id < end
+                && finished < count; id = available.nextSetBit(id + 1)) {
+            finishShift(id);
+            finished++;
+        }
+        return finished;
+    }
+
+    void startNewShift(int id) {
+        applyLocationUpdates(id);
+        offDuty[id] = false;
+        updateAvailability(id);
+    }
+
+    void finishShift(int id) {
+        applyLocationUpdates(id);
+        offDuty[id] = true;
+        updateAvailability(id);
+    }
+
+    void dispatch(int id, Incident incident) {
+        applyLocationUpdates(id);
+        this.incident[id] = incident;
+        startJourney(id, incident.getLocation());
+        assign(id, incident);
+        updateAvailability(id);
+    }
+
+    void dispatchTransport(int id, Incident incident, Coordinate hospitalLocation) {
+        dispatch(id, incident);
+        hospital[id] = hospitalLocation;
+    }
+
+    void transport(int id) {
+        applyLocationUpdates(id);
+        startJourney(id, hospital[id]);
+    }
+
+    void arriveAtHospital(int id) {
+        applyLocationUpdates(id);
+        location[id] = hospital[id];
+        updateAvailability(id);
+    }
+
+    void flagAsAvailable(int id) {
+        applyLocationUpdates(id);
+        if (incident[id] != null) {
+            unassign(id, incident[id]);
+        }
+        incident[id] = null;
+        hospital[id] = null;
+        startJourney(id, getBaseStation(id).getCoordinate());
+        timeToDestination[id] = location[id].timeTo(destination[id]);
+        updateAvailability(id);
+    }
+
+    // The time left to the destination is only set when returning to the base
+    // station, as it always has been
+    private void startJourney(int id, Coordinate destination) {
+        this.destination[id] = destination;
+        origin[id] = location[id];
+        route[id].clear();
+        travelStart[id] = EventQueue.time(currentEvent);
+    }
+
+    // Applies the location updates the ambulance is due before the current event
+    private void applyLocationUpdates(int id) {
+        int count = pendingUpdateCounts[id];
+        if (count == 0) {
+            return;
+        }
+        int[] updates = pendingUpdates[id];
+        while (count > 0) {
+            int next = 0;
+            for (int i = 1; i < count; i++) {
+                if (updates[i] < updates[next]) {
+                    next = i;
+                }
+            }
+            if (EventQueue.pack(updates[next], Type.LOCATION_UPDATE, id) > currentEvent) {
+                break;
+            }
+            updateLocation(id);
+            if (location[id].equals(destination[id])) {
+                updates[next] = updates[--count];
+            } else {
+                updates[next] += 60 * updateLocationPeriod;
+            }
+        }
+        pendingUpdateCounts[id] = count;
+    }
+
+    private void updateLocation(int id) {
+        timeToDestination[id] -= 60 * updateLocationPeriod;
+        if (timeToDestination[id] <= 0) {
+            location[id] = destination[id];
+            timeToDestination[id] = 0;
+        } else {
+            if (!route[id].isFound()) {
+                route[id].find(origin[id], destination[id]);
+            }
+            if (route[id].hasPath()) {
+                location[id] = route[id].get(route[id].indexAt(timeToDestination[id]));
+            }
+        }
+    }
+
+    private void assign(int id, Incident incident) {
+        int slot = findSlot(incident);
+        if (assignedIncidents[slot] == null) {
+            assignedIncidents[slot] = incident;
+            firstAssigned[slot] = id;
+            nextAssigned[id] = NONE;
+        } else if (id < firstAssigned[slot]) {
+            nextAssigned[id] = firstAssigned[slot];
+            firstAssigned[slot] = id;
+        } else {
+            int previous = firstAssigned[slot];
+            while (nextAssigned[previous] != NONE && nextAssigned[previous] < id) {
+                previous = nextAssigned[previous];
+            }
+            nextAssigned[id] = nextAssigned[previous];
+            nextAssigned[previous] = id;
+        }
+    }
+
+    private void unassign(int id, Incident incident) {
+        int slot = findSlot(incident);
+        if (firstAssigned[slot] == id) {
+            firstAssigned[slot] = nextAssigned[id];
+            if (firstAssigned[slot] == NONE) {
+                removeSlot(slot);
+            }
+        } else {
+            int previous = firstAssigned[slot];
+            while (nextAssigned[previous] != id) {
+                previous = nextAssigned[previous];
+            }
+            nextAssigned[previous] = nextAssigned[id];
+        }
+    }
+
+    // The slot of the incident, or the empty slot it would go in
+    private int findSlot(Incident incident) {
+        int mask = assignedIncidents.length - 1;
+        int slot = homeSlot(incident);
+        while (assignedIncidents[slot] != null && assignedIncidents[slot] != incident) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int homeSlot(Incident incident) {
+        int hash = System.identityHashCode(incident);
+        return (hash ^ (hash >>> 16)) & (assignedIncidents.length - 1);
+    }
+
+    // Empties the slot and moves back the incidents after it that would no
+    // longer be found
+    private void removeSlot(int slot) {
+        int mask = assignedIncidents.length - 1;
+        assignedIncidents[slot] = null;
+        for (int next = (slot + 1) & mask; assignedIncidents[next] != null; next = (next + 1) & mask) {
+            int home = homeSlot(assignedIncidents[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                assignedIncidents[slot] = assignedIncidents[next];
+                firstAssigned[slot] = firstAssigned[next];
+                assignedIncidents[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    private void updateAvailability(int id) {
+        boolean isAvailable = isAvailable(id);
+        boolean isIdleAtBaseStation = isAvailable && isAtBaseStation(id);
+        idleAtBaseStation.set(id, isIdleAtBaseStation);
+        awayFromBaseStation.set(id, isAvailable && !isIdleAtBaseStation);
+        if (isAvailable == available.get(id)) {
+            return;
+        }
+        available.set(id, isAvailable);
+        int change = isAvailable ? 1 : -1;
+        availableCount += change;
+        availableAtBaseStation[baseStation[id]] += change;
+    }
+
+}
@@ -3,6 +3,7 @@ package no.ntnu.ambulanceallocation.simulation;
 import java.util.Comparator;
 
 import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
 
 public enum Hospital {
@@ -22,11 +23,15 @@ public enum Hospital {
     private final Coordinate coordinate;
 
     Hospital(int easting, int northing) {
-        coordinate = new Coordinate(easting, northing);
+        coordinate = DistanceIO.coordinateRegistry.intern(easting, northing);
     }
 
     public static Comparator<Hospital> closestTo(Incident incident) {
-        return Comparator.comparingDouble(hospital -> timeTo(hospital, incident));
+        return closestTo(incident.getLocation());
+    }
+
+    public static Comparator<Hospital> closestTo(Coordinate location) {
+        return Comparator.comparingDouble(hospital -> hospital.coordinate.timeTo(location));
     }
 
     public static double timeTo(Hospital hospital, Incident incident) {
@@ -0,0 +1,93 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.CoordinateRegistry;
+import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
+import no.ntnu.ambulanceallocation.simulation.grid.TravelTimeMatrix;
+
+// Base stations ranked by the cost of each dispatch policy from the station to
+// every grid cell, built from the loaded grid the first time it is used. Ties
+// are broken by declaration order, as in a stable sort of BaseStation.values().
+final class NearestBaseStations {
+
+    private static final BaseStation[] baseStations = BaseStation.values();
+    private static final Map<DispatchPolicy, NearestBaseStations> rankingsByPolicy = new EnumMap<>(
+            DispatchPolicy.class);
+
+    static {
+        for (DispatchPolicy policy : DispatchPolicy.values()) {
+            rankingsByPolicy.put(policy, new NearestBaseStations(policy));
+        }
+    }
+
+    // rankings[cell * baseStations.length + k] is the ordinal of the k-th
+    // cheapest base station, and costs holds the matching costs. Cells not
+    // reachable from every base station are left unranked.
+    private final byte[] rankings;
+    private final double[] costs;
+    private final boolean[] ranked;
+
+    private NearestBaseStations(DispatchPolicy policy) {
+        CoordinateRegistry coordinateRegistry = DistanceIO.coordinateRegistry;
+        TravelTimeMatrix travelTimeMatrix = DistanceIO.travelTimeMatrix;
+        int cells = Math.min(coordinateRegistry.size(), travelTimeMatrix.size());
+        rankings = new byte[cells * baseStations.length];
+        costs = new double[cells * baseStations.length];
+        ranked = new boolean[cells];
+
+        for (int cell = 0; cell < cells; cell++) {
+            ranked[cell] = rankCell(policy, travelTimeMatrix, coordinateRegistry.get(cell));
+        }
+    }
+
+    private boolean rankCell(DispatchPolicy policy, TravelTimeMatrix travelTimeMatrix, Coordinate location) {
+        int offset = location.index() * baseStations.length;
+        for (int baseStation = 0; baseStation < baseStations.length; baseStation++) {
+            Coordinate coordinate = baseStations[baseStation].getCoordinate();
+            if (coordinate.index() == Coordinate.UNINDEXED) {
+                return false;
+            }
+            if (travelTimeMatrix.getTravelTime(coordinate.index(), location.index()) == TravelTimeMatrix.NO_ROUTE) {
+                return false;
+            }
+            double cost = policy.cost(coordinate, location);
+            // Insertion sort, keeping equal costs in declaration order
+            int k = baseStation;
+            while (k > 0 && costs[offset + k - 1] > cost) {
+                rankings[offset + k] = rankings[offset + k - 1];
+                costs[offset + k] = costs[offset + k - 1];
+                k--;
+            }
+            rankings[offset + k] = (byte) baseStation;
+            costs[offset + k] = cost;
+        }
+        return true;
+    }
+
+    static NearestBaseStations of(DispatchPolicy policy) {
+        return rankingsByPolicy.get(policy);
+    }
+
+    static int size() {
+        return baseStations.length;
+    }
+
+    boolean isRanked(Coordinate location) {
+        return location.index() != Coordinate.UNINDEXED && location.index() < ranked.length
+                && ranked[location.index()];
+    }
+
+    // The k-th cheapest base station to dispatch from to the location, starting
+    // from 0
+    BaseStation get(Coordinate location, int k) {
+        return baseStations[rankings[location.index() * baseStations.length + k]];
+    }
+
+    double getCost(Coordinate location, int k) {
+        return costs[location.index() * baseStations.length + k];
+    }
+
+}
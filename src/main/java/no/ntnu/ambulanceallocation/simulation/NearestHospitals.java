@@ -0,0 +1,88 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
+import no.ntnu.ambulanceallocation.simulation.grid.TravelTimeMatrix;
+
+// Hospitals ranked by travel time to every grid cell, built from the loaded
+// travel time matrix and the Hospital enum the first time it is used. Ties are
+// broken by declaration order, as in a stable sort of Hospital.values().
+public final class NearestHospitals {
+
+    private static final int UNRANKED = -1;
+
+    private static final Hospital[] hospitals = Hospital.values();
+    // rankings[cell * hospitals.length + k] is the ordinal of the k-th nearest
+    // hospital, and travelTimes holds the matching travel times. Cells not
+    // reachable from every hospital are left unranked.
+    private static final int[] rankings;
+    private static final int[] travelTimes;
+
+    static {
+        TravelTimeMatrix travelTimeMatrix = DistanceIO.travelTimeMatrix;
+        int cells = travelTimeMatrix.size();
+        rankings = new int[cells * hospitals.length];
+        travelTimes = new int[cells * hospitals.length];
+        Arrays.fill(rankings, UNRANKED);
+
+        int[] origins = Arrays.stream(hospitals).mapToInt(hospital -> hospital.getCoordinate().index()).toArray();
+        if (Arrays.stream(origins).noneMatch(origin -> origin == Coordinate.UNINDEXED)) {
+            for (int cell = 0; cell < cells; cell++) {
+                rankCell(travelTimeMatrix, origins, cell);
+            }
+        }
+    }
+
+    private NearestHospitals() {
+    }
+
+    private static void rankCell(TravelTimeMatrix travelTimeMatrix, int[] origins, int cell) {
+        int offset = cell * hospitals.length;
+        for (int hospital = 0; hospital < hospitals.length; hospital++) {
+            int travelTime = travelTimeMatrix.getTravelTime(origins[hospital], cell);
+            if (travelTime == TravelTimeMatrix.NO_ROUTE) {
+                Arrays.fill(rankings, offset, offset + hospitals.length, UNRANKED);
+                return;
+            }
+            // Insertion sort, keeping equal travel times in declaration order
+            int k = hospital;
+            while (k > 0 && travelTimes[offset + k - 1] > travelTime) {
+                rankings[offset + k] = rankings[offset + k - 1];
+                travelTimes[offset + k] = travelTimes[offset + k - 1];
+                k--;
+            }
+            rankings[offset + k] = hospital;
+            travelTimes[offset + k] = travelTime;
+        }
+    }
+
+    public static Hospital nearest(Coordinate location) {
+        return get(location, 0);
+    }
+
+    // The k-th nearest hospital to the location, starting from 0
+    public static Hospital get(Coordinate location, int k) {
+        if (isRanked(location)) {
+            return hospitals[rankings[location.index() * hospitals.length + k]];
+        }
+        List<Hospital> nearestHospitals = Arrays.asList(hospitals.clone());
+        nearestHospitals.sort(Hospital.closestTo(location));
+        return nearestHospitals.get(k);
+    }
+
+    public static int travelTime(Coordinate location, int k) {
+        if (isRanked(location)) {
+            return travelTimes[location.index() * hospitals.length + k];
+        }
+        return get(location, k).getCoordinate().timeTo(location);
+    }
+
+    private static boolean isRanked(Coordinate location) {
+        return location.index() != Coordinate.UNINDEXED
+                && rankings[location.index() * hospitals.length] != UNRANKED;
+    }
+
+}
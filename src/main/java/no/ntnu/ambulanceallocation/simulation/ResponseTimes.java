@@ -2,46 +2,155 @@ package no.ntnu.ambulanceallocation.simulation;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentStore;
 import no.ntnu.ambulanceallocation.utils.Utils;
 
+// Kept in primitive arrays while simulating, timestamps to the second, and
+// turned into lists the first time they are asked for
 public class ResponseTimes {
 
-    private final List<LocalDateTime> timestamps = new ArrayList<>();
-    private final List<Coordinate> coordinates = new ArrayList<>();
-    private final List<Integer> responseTimes = new ArrayList<>();
+    private long[] timestamps;
+    private Coordinate[] coordinates;
+    private int[] responseTimes;
+    private int size = 0;
+    private long sum = 0;
+    // Set if the simulation stopped once the average could no longer get below
+    // a bound, see Simulation#simulate(Allocation, double)
+    private double averageLowerBound = Double.NaN;
+
+    private List<LocalDateTime> timestampList;
+    private List<Coordinate> coordinateList;
+    private List<Integer> responseTimeList;
+
+    public ResponseTimes() {
+        this(256);
+    }
+
+    // Room for the given number of response times before growing
+    ResponseTimes(int capacity) {
+        timestamps = new long[Math.max(1, capacity)];
+        coordinates = new Coordinate[timestamps.length];
+        responseTimes = new int[timestamps.length];
+    }
 
     public void add(LocalDateTime timestamp, Coordinate coordinate, int responseTime) {
-        timestamps.add(timestamp);
-        coordinates.add(coordinate);
-        responseTimes.add(responseTime);
+        add(IncidentStore.toEpochSecond(timestamp), coordinate, responseTime);
+    }
+
+    void add(long timestampEpochSecond, Coordinate coordinate, int responseTime) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, 2 * size);
+            coordinates = Arrays.copyOf(coordinates, 2 * size);
+            responseTimes = Arrays.copyOf(responseTimes, 2 * size);
+        }
+        timestamps[size] = timestampEpochSecond;
+        coordinates[size] = coordinate;
+        responseTimes[size] = responseTime;
+        size++;
+        sum += responseTime;
+        timestampList = null;
+        coordinateList = null;
+        responseTimeList = null;
+    }
+
+    // Replaces the response times with the first count of the other. Response
+    // times are only ever added, so those of a run up to some point stay the
+    // same while it goes on.
+    void copyFrom(ResponseTimes other, int count) {
+        if (timestamps.length < count) {
+            timestamps = new long[other.timestamps.length];
+            coordinates = new Coordinate[timestamps.length];
+            responseTimes = new int[timestamps.length];
+        }
+        System.arraycopy(other.timestamps, 0, timestamps, 0, count);
+        System.arraycopy(other.coordinates, 0, coordinates, 0, count);
+        System.arraycopy(other.responseTimes, 0, responseTimes, 0, count);
+        size = count;
+        sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += responseTimes[i];
+        }
+        averageLowerBound = Double.NaN;
+        timestampList = null;
+        coordinateList = null;
+        responseTimeList = null;
     }
 
     public List<LocalDateTime> getTimestamps() {
-        return timestamps;
+        if (timestampList == null) {
+            timestampList = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                timestampList.add(IncidentStore.toDateTime(timestamps[i]));
+            }
+        }
+        return timestampList;
     }
 
     public List<Coordinate> getCoordinates() {
-        return coordinates;
+        if (coordinateList == null) {
+            coordinateList = new ArrayList<>(Arrays.asList(coordinates).subList(0, size));
+        }
+        return coordinateList;
     }
 
     public List<Integer> getResponseTimes() {
-        return responseTimes;
+        if (responseTimeList == null) {
+            responseTimeList = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                responseTimeList.add(responseTimes[i]);
+            }
+        }
+        return responseTimeList;
     }
 
     @Override
     public String toString() {
         StringBuilder pairs = new StringBuilder();
-        for (int i = 0; i < timestamps.size(); i++) {
-            pairs.append(String.format("(%s, %s, %s), ", timestamps.get(i), coordinates.get(i), responseTimes.get(i)));
+        for (int i = 0; i < size; i++) {
+            pairs.append(String.format("(%s, %s, %s), ", IncidentStore.toDateTime(timestamps[i]), coordinates[i],
+                    responseTimes[i]));
         }
         return String.format("TimeSeries[%s]", pairs);
     }
 
+    int count() {
+        return size;
+    }
+
+    long sum() {
+        return sum;
+    }
+
+    public boolean isWorseThanBound() {
+        return !Double.isNaN(averageLowerBound);
+    }
+
+    // A lower bound of the average the full simulation would have given, above
+    // the bound it was stopped at
+    public double getAverageLowerBound() {
+        if (!isWorseThanBound()) {
+            throw new IllegalStateException("The simulation was not stopped at a bound");
+        }
+        return averageLowerBound;
+    }
+
+    void setWorseThanBound(double averageLowerBound) {
+        this.averageLowerBound = averageLowerBound;
+    }
+
+    // The same as the average of the list of response times, without creating it
     public double average() {
-        return Utils.average(getResponseTimes());
+        if (isWorseThanBound()) {
+            throw new IllegalStateException("Only a lower bound of the average is known");
+        }
+        if (size == 0) {
+            return Utils.average(List.of());
+        }
+        return (double) sum / size;
     }
 
     public double median() {
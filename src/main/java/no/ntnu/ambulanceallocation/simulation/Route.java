@@ -0,0 +1,76 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+
+/**
+ * The path of one journey of an ambulance, with the travel times left from
+ * each cell on it, so the cell reached when some travel time is left is found
+ * by binary search instead of walking the path.
+ * <p>
+ * An ambulance with a given travel time left is at the last cell before the
+ * first cell that is no further from the destination, the first cell of the
+ * path being skipped. Travel times along a path need not decrease, so the
+ * search runs over their running minimum, which gives the same cell.
+ * <p>
+ * Every ambulance reuses one route for all its journeys, so finding a route
+ * only allocates when a path is longer than any before it.
+ */
+final class Route {
+
+    private static final int NOT_FOUND = -2;
+    private static final int NO_PATH = -1;
+
+    private Coordinate[] path = new Coordinate[32];
+    // minimumTimesLeft[k] is the least travel time left from the cells 1 to k
+    private int[] minimumTimesLeft = new int[32];
+    private int length = NOT_FOUND;
+
+    // Forgets the route, to be found again for the next journey
+    void clear() {
+        length = NOT_FOUND;
+    }
+
+    boolean isFound() {
+        return length != NOT_FOUND;
+    }
+
+    void find(Coordinate origin, Coordinate destination) {
+        length = origin.pathTo(destination, path);
+        if (length > path.length) {
+            path = new Coordinate[Integer.highestOneBit(length) << 1];
+            minimumTimesLeft = new int[path.length];
+            length = origin.pathTo(destination, path);
+        }
+        if (length == NO_PATH) {
+            return;
+        }
+        minimumTimesLeft[0] = Integer.MAX_VALUE;
+        for (int k = 1; k < length; k++) {
+            minimumTimesLeft[k] = Math.min(minimumTimesLeft[k - 1], path[k].timeTo(destination));
+        }
+    }
+
+    boolean hasPath() {
+        return length >= 0;
+    }
+
+    Coordinate get(int index) {
+        return path[index];
+    }
+
+    // Index of the cell reached with the given travel time left
+    int indexAt(int timeLeft) {
+        int low = 1;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (minimumTimesLeft[middle] <= timeLeft) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low - 1;
+    }
+
+}
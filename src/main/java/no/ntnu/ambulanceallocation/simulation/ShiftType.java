@@ -17,6 +17,17 @@ public enum ShiftType {
         return get(dateTime.toLocalTime());
     }
 
+    // Shift at the given second since the epoch, taken as UTC like incident times
+    public static ShiftType ofEpochSecond(long epochSecond) {
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+        if (secondOfDay > Parameters.NIGHT_SHIFT_START.toSecondOfDay()
+                || secondOfDay < Parameters.DAY_SHIFT_START.toSecondOfDay()) {
+            return NIGHT;
+        } else {
+            return DAY;
+        }
+    }
+
     public static ShiftType get(LocalTime time) {
         if (time.isAfter(Parameters.NIGHT_SHIFT_START) || time.isBefore(Parameters.DAY_SHIFT_START)) {
             return NIGHT;
@@ -1,54 +1,98 @@
 package no.ntnu.ambulanceallocation.simulation;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javafx.beans.property.DoubleProperty;
+import no.ntnu.ambulanceallocation.Parameters;
 import no.ntnu.ambulanceallocation.experiments.Result;
 import no.ntnu.ambulanceallocation.optimization.Allocation;
-import no.ntnu.ambulanceallocation.simulation.event.Event;
-import no.ntnu.ambulanceallocation.simulation.event.JobCompletion;
-import no.ntnu.ambulanceallocation.simulation.event.LocationUpdate;
+import no.ntnu.ambulanceallocation.simulation.event.EventQueue;
+import no.ntnu.ambulanceallocation.simulation.event.EventQueue.Type;
 import no.ntnu.ambulanceallocation.simulation.event.NewCall;
 import no.ntnu.ambulanceallocation.simulation.event.PartiallyRespondedCall;
-import no.ntnu.ambulanceallocation.simulation.event.SceneDeparture;
 import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentArchive;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentGenerator;
 import no.ntnu.ambulanceallocation.simulation.incident.IncidentIO;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentStore;
 import no.ntnu.ambulanceallocation.utils.TriConsumer;
-import no.ntnu.ambulanceallocation.utils.Utils;
 
 public final class Simulation {
 
-    private static final Map<Config, List<NewCall>> memoizedEventList = new HashMap<>();
-    private static final Map<Allocation, Double> allocationResults = new HashMap<>();
+    private static final int MEMOIZED_WINDOWS = 64;
+    private static final int CHECKPOINTS_PER_SHIFT_CHANGE = 4;
+    // Shared by simulations on all threads and keyed only by the time window, so
+    // configs differing in other parameters share the same calls
+    private static final Map<TimeWindow, List<NewCall>> memoizedEventList = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TimeWindow, List<NewCall>> eldest) {
+                    return size() > MEMOIZED_WINDOWS;
+                }
+            });
+    private static final ThreadLocal<Simulation> threadSimulation = new ThreadLocal<>();
+    private static final Map<Allocation, Double> allocationResults = Collections.synchronizedMap(new HashMap<>());
 
     private final DoubleProperty simulationUpdateInterval;
     private final TriConsumer<LocalDateTime, Collection<Ambulance>, Collection<NewCall>> onTimeUpdate;
     private final Config config;
     private final boolean visualizationMode;
-    private final List<Ambulance> ambulances = new ArrayList<>();
-    private final Queue<NewCall> callQueue = new LinkedList<>();
-    private final PriorityQueue<Event> eventQueue = new PriorityQueue<>();
-    private final Map<ShiftType, Map<BaseStation, Integer>> baseStationShiftCount = new HashMap<>();
-    private final Map<BaseStation, List<Ambulance>> baseStationAmbulances = new HashMap<>();
-    private final Map<BaseStation, Integer> remainingOffDutyAmbulances = new HashMap<>();
+    // Replays generated instead of historical incidents when set
+    private final IncidentGenerator incidentGenerator;
+    private final int replication;
+    private final Queue<NewCall> callQueue = new ArrayDeque<>();
+    private final EventQueue eventQueue = new EventQueue(Parameters.ORDER_SIMULTANEOUS_EVENTS_BY_TYPE);
+    // Calls by their entity id in the event queue, the calls of the simulated
+    // period first and then the calls put back from the call queue. The events
+    // of the first are kept, so simulating the same period again only copies
+    // them.
+    private List<NewCall> initialCalls = List.of();
+    private final EventQueue initialEvents = new EventQueue(eventQueue.isOrderedByType());
+    private final List<NewCall> requeuedCalls = new ArrayList<>();
+    // Per initial call, the least response time it can get (its dispatch delay
+    // plus the least travel time to it), sorted ascending, with prefix sums.
+    // Computed on the first bounded run after the initial calls change.
+    private long[] minimumResponseTimes;
+    private long[] minimumResponseTimeSums;
+    // Ambulances of each base station by shift and the ambulances each base
+    // station is to take off duty as soon as they are freed, by station ordinal
+    private final Map<ShiftType, int[]> baseStationShiftCount = new EnumMap<>(ShiftType.class);
+    private final int[] remainingOffDutyAmbulances = new int[BaseStation.size()];
+    private final int[] ambulancesPerBaseStation = new int[BaseStation.size()];
+    // Kept between runs and reset for each allocation
+    private FleetState fleet;
+    // Ids of the ambulances assigned to the incident handled, reused across events
+    private int[] assignedAmbulances = new int[0];
     private ResponseTimes responseTimes;
-    private LocalDateTime time;
+    // Event times are seconds from this second since the epoch, the start of the
+    // buffer before the simulated period
+    private long startEpochSecond;
+    private int time;
+    private long processedEvents;
     private ShiftType currentShift;
+    private int shiftChanges;
+    // The state before each shift change of the last few runs to get there with
+    // different shift counts, the least recently used replaced first. Runs
+    // resume from the last one their allocation cannot have made a difference
+    // to yet, see Checkpoint.
+    private boolean checkpointing = false;
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private long runs;
 
     static {
         Thread allocationsSaveHook = new Thread(() -> {
@@ -70,13 +114,15 @@ public final class Simulation {
         List<List<Integer>> nightAmbulanceCounts = new ArrayList<>();
         List<Double> responseTimeResults = new ArrayList<>();
 
-        allocationResults.entrySet().stream().forEach(
-                a -> {
-                    dayAmbulanceCounts.add(a.getKey().getDayShiftAllocation());
-                    nightAmbulanceCounts.add(a.getKey().getNightShiftAllocation());
-                    responseTimeResults.add(a.getValue().doubleValue());
-                });
-        allocationResults.clear();
+        synchronized (allocationResults) {
+            allocationResults.entrySet().stream().forEach(
+                    a -> {
+                        dayAmbulanceCounts.add(a.getKey().getDayShiftAllocation());
+                        nightAmbulanceCounts.add(a.getKey().getNightShiftAllocation());
+                        responseTimeResults.add(a.getValue().doubleValue());
+                    });
+            allocationResults.clear();
+        }
 
         Result simulationsResult = new Result();
         simulationsResult.saveColumn("Count of ambulances per base station for the day shift",
@@ -101,10 +147,16 @@ public final class Simulation {
     }
 
     public Simulation(final Config config) {
+        this(config, null, 0);
+    }
+
+    public Simulation(final Config config, final IncidentGenerator incidentGenerator, final int replication) {
         this.config = config;
         this.visualizationMode = false;
         this.simulationUpdateInterval = null;
         this.onTimeUpdate = null;
+        this.incidentGenerator = incidentGenerator;
+        this.replication = replication;
     }
 
     public Simulation(
@@ -115,12 +167,36 @@ public final class Simulation {
         this.visualizationMode = true;
         this.simulationUpdateInterval = simulationUpdateInterval;
         this.onTimeUpdate = onTimeUpdate;
+        this.incidentGenerator = null;
+        this.replication = 0;
     }
 
     public static Simulation withConfig(final Config config) {
         return new Simulation(config);
     }
 
+    // The simulation of the calling thread for the config, reused by every
+    // call with an equal config, while the parameters it was made with are
+    // unchanged, so that its fleet, queues and indices are only reset between
+    // runs. It must not be shared with other threads.
+    public static Simulation forCurrentThread(final Config config) {
+        Simulation simulation = threadSimulation.get();
+        if (simulation == null || !simulation.config.equals(config)
+                || simulation.checkpointing != Parameters.SIMULATION_CHECKPOINTS
+                || simulation.eventQueue.isOrderedByType() != Parameters.ORDER_SIMULTANEOUS_EVENTS_BY_TYPE) {
+            simulation = new Simulation(config);
+            simulation.checkpointing = Parameters.SIMULATION_CHECKPOINTS;
+            threadSimulation.set(simulation);
+        }
+        return simulation;
+    }
+
+    // Simulates one replication of incidents drawn from the generator
+    public static Simulation withReplication(final Config config, final IncidentGenerator incidentGenerator,
+            final int replication) {
+        return new Simulation(config, incidentGenerator, replication);
+    }
+
     public static Simulation withDefaultConfig() {
         return new Simulation(Config.defaultConfig());
     }
@@ -143,81 +219,103 @@ public final class Simulation {
     }
 
     public ResponseTimes simulate(final Allocation allocation) {
+        return simulate(allocation, Double.POSITIVE_INFINITY);
+    }
+
+    // Stops as soon as the average response time can no longer get below the
+    // bound, in which case the response times are flagged as worse than it and
+    // only hold a lower bound of their average. Runs that are not stopped give
+    // the same response times as without a bound.
+    public ResponseTimes simulate(final Allocation allocation, final double bound) {
         initialize(allocation);
-        Event event = null;
-        time = null;
+        time = 0;
+        int nextCheckpoint = 0;
+        runs++;
+        if (checkpointing) {
+            Checkpoint checkpoint = findCheckpoint();
+            if (checkpoint != null) {
+                restore(checkpoint);
+                nextCheckpoint = checkpoint.shiftChanges + 1;
+            }
+        }
+        boolean bounded = bound < Double.POSITIVE_INFINITY;
+        if (bounded && minimumResponseTimes == null) {
+            createMinimumResponseTimes();
+        }
+        int checkedResponseTimes = 0;
 
         while (!eventQueue.isEmpty()) {
-            event = eventQueue.poll();
-            if (time != null && event.getTime().isBefore(time)) {
+            if (checkpointing && shiftChanges >= nextCheckpoint
+                    && ShiftType.ofEpochSecond(startEpochSecond + EventQueue.time(eventQueue.peek())) != currentShift) {
+                saveCheckpoint();
+                nextCheckpoint = shiftChanges + 1;
+            }
+            long event = eventQueue.poll();
+            if (EventQueue.time(event) < time) {
                 throw new IllegalStateException("Event queue is not sorted");
             }
 
-            time = event.getTime();
+            time = EventQueue.time(event);
+            processedEvents++;
+            fleet.advanceTo(event);
             setCurrentShift();
 
-            switch (event) {
-                case NewCall newCall -> {
-                    List<Ambulance> dispatchedAmbulances = dispatch(newCall);
-                    if (!dispatchedAmbulances.isEmpty()) {
-                        if (newCall.incident.departureFromScene().isPresent()) {
+            int entity = EventQueue.entity(event);
+            switch (EventQueue.type(event)) {
+                case NEW_CALL -> {
+                    NewCall newCall = getCall(entity);
+                    int dispatchedAmbulances = dispatch(newCall);
+                    if (dispatchedAmbulances > 0) {
+                        if (newCall.incident.hasDepartureFromScene()) {
                             long duration = newCall.incident.getDuration();
-                            eventQueue.add(new SceneDeparture(time.plusSeconds(duration), newCall));
-                            saveResponseTime(newCall, dispatchedAmbulances.get(0));
+                            eventQueue.add(time + (int) duration, Type.SCENE_DEPARTURE, entity);
+                            saveResponseTime(newCall, fleet.getSelected(0));
                         } else {
-                            for (Ambulance ambulance : dispatchedAmbulances) {
+                            for (int i = 0; i < dispatchedAmbulances; i++) {
                                 long totalInterval = newCall.incident.getTotalIntervalNonTransport();
-                                eventQueue.add(new JobCompletion(time.plusSeconds(totalInterval), ambulance));
+                                eventQueue.add(time + (int) totalInterval, Type.JOB_COMPLETION, fleet.getSelected(i));
                             }
                         }
                     }
                 }
-                case SceneDeparture sceneDeparture -> {
-                    List<Ambulance> assignedAmbulances = Utils.filterList(ambulances,
-                            (ambulance) -> ambulance.getIncident() == sceneDeparture.incident);
-
-                    for (Ambulance ambulance : assignedAmbulances) {
-                        if (ambulance.isTransport()) {
-                            long transportTime = sceneDeparture.incident
-                                    .getTimeFromDepartureToAvailableTransport();
-                            ambulance.transport();
-                            eventQueue.add(new JobCompletion(time.plusSeconds(transportTime), ambulance));
+                case SCENE_DEPARTURE -> {
+                    Incident incident = getCall(entity).incident;
+                    int assigned = fleet.getAssigned(incident, assignedAmbulances);
+                    for (int i = 0; i < assigned; i++) {
+                        int id = assignedAmbulances[i];
+                        if (fleet.isTransport(id)) {
+                            long transportTime = incident.getTimeFromDepartureToAvailableTransport();
+                            fleet.transport(id);
+                            eventQueue.add(time + (int) transportTime, Type.JOB_COMPLETION, id);
                         } else {
-                            ambulance.flagAsAvailable();
-                            int ambulancesToReturn = remainingOffDutyAmbulances
-                                    .get(ambulance.getBaseStation());
-                            if (ambulancesToReturn > 0) {
-                                ambulance.finishShift();
-                                remainingOffDutyAmbulances.put(ambulance.getBaseStation(),
-                                        --ambulancesToReturn);
-                            }
-                            eventQueue.add(
-                                    new LocationUpdate(time.plusSeconds(config.UPDATE_LOCATION_PERIOD()),
-                                            ambulance));
+                            fleet.flagAsAvailable(id);
+                            returnOffDuty(id);
+                            startLocationUpdates(id, time + config.UPDATE_LOCATION_PERIOD());
                         }
                     }
                     checkQueue();
                 }
-                case JobCompletion jobCompletion -> {
-                    if (jobCompletion.ambulance.isTransport()) {
-                        jobCompletion.ambulance.arriveAtHospital();
-                    }
-                    jobCompletion.ambulance.flagAsAvailable();
-                    int ambulancesToReturn = remainingOffDutyAmbulances.get(jobCompletion.ambulance.getBaseStation());
-                    if (ambulancesToReturn > 0) {
-                        jobCompletion.ambulance.finishShift();
-                        remainingOffDutyAmbulances.put(jobCompletion.ambulance.getBaseStation(),
-                                --ambulancesToReturn);
+                case JOB_COMPLETION -> {
+                    if (fleet.isTransport(entity)) {
+                        fleet.arriveAtHospital(entity);
                     }
-                    eventQueue.add(new LocationUpdate(time.plusMinutes(config.UPDATE_LOCATION_PERIOD()),
-                            jobCompletion.ambulance));
+                    fleet.flagAsAvailable(entity);
+                    returnOffDuty(entity);
+                    startLocationUpdates(entity, time + 60 * config.UPDATE_LOCATION_PERIOD());
                     checkQueue();
                 }
-                case LocationUpdate locationUpdate -> {
-                    locationUpdate.ambulance.updateLocation(config.UPDATE_LOCATION_PERIOD());
-                    if (!locationUpdate.ambulance.endOfJourney()) {
-                        eventQueue.add(new LocationUpdate(time.plusMinutes(config.UPDATE_LOCATION_PERIOD()),
-                                locationUpdate.ambulance));
+                case LOCATION_UPDATE -> {
+                    if (!eventQueue.isOrderedByType()) {
+                        if (fleet.moveAlong(entity)) {
+                            eventQueue.add(time + 60 * config.UPDATE_LOCATION_PERIOD(), Type.LOCATION_UPDATE, entity);
+                        }
+                        break;
+                    }
+                    // Otherwise only scheduled to redraw moving ambulances in
+                    // visualization mode
+                    fleet.updateLocations();
+                    if (!eventQueue.isEmpty()) {
+                        eventQueue.add(time + 60 * config.UPDATE_LOCATION_PERIOD(), Type.LOCATION_UPDATE, 0);
                     }
                 }
             }
@@ -226,155 +324,390 @@ public final class Simulation {
                 visualizationCallback();
             }
 
+            if (bounded && responseTimes.count() > checkedResponseTimes) {
+                checkedResponseTimes = responseTimes.count();
+                double averageLowerBound = averageLowerBound();
+                if (averageLowerBound > bound) {
+                    responseTimes.setWorseThanBound(averageLowerBound);
+                    return responseTimes;
+                }
+            }
+
         }
         allocationResults.put(allocation, responseTimes.average());
         return responseTimes;
     }
 
+    // The state of a run before a shift change. Up to the first shift change
+    // the state only depends on the counts of the first shift, and after it on
+    // those of both, as long as the fleet of the resumed run can take it.
+    private static final class Checkpoint {
+
+        private List<NewCall> calls = List.of();
+        private final EventQueue eventQueue = new EventQueue();
+        private FleetState fleet;
+        private final List<NewCall> callQueue = new ArrayList<>();
+        private final List<NewCall> requeuedCalls = new ArrayList<>();
+        private final int[] remainingOffDutyAmbulances = new int[BaseStation.size()];
+        private final Map<ShiftType, int[]> shiftCounts = new EnumMap<>(ShiftType.class);
+        // Those of the run it was saved in, up to responseTimeCount
+        private ResponseTimes responseTimes;
+        private int responseTimeCount;
+        private int time;
+        private ShiftType currentShift;
+        private int shiftChanges;
+        private long lastUsed;
+
+    }
+
+    private void saveCheckpoint() {
+        Checkpoint checkpoint = null;
+        int saved = 0;
+        for (Checkpoint other : checkpoints) {
+            if (other.shiftChanges != shiftChanges) {
+                continue;
+            }
+            saved++;
+            if (hasSameShiftCounts(other)) {
+                checkpoint = other;
+                break;
+            }
+            if (checkpoint == null || other.lastUsed < checkpoint.lastUsed) {
+                checkpoint = other;
+            }
+        }
+        if (saved < CHECKPOINTS_PER_SHIFT_CHANGE && (checkpoint == null || !hasSameShiftCounts(checkpoint))) {
+            checkpoint = new Checkpoint();
+            checkpoints.add(checkpoint);
+        }
+        checkpoint.lastUsed = runs;
+        checkpoint.calls = initialCalls;
+        checkpoint.eventQueue.copyFrom(eventQueue);
+        if (checkpoint.fleet == null) {
+            checkpoint.fleet = new FleetState(ambulancesPerBaseStation, config.UPDATE_LOCATION_PERIOD(),
+                    startEpochSecond);
+        }
+        checkpoint.fleet.copyOf(fleet);
+        checkpoint.callQueue.clear();
+        checkpoint.callQueue.addAll(callQueue);
+        checkpoint.requeuedCalls.clear();
+        checkpoint.requeuedCalls.addAll(requeuedCalls);
+        System.arraycopy(remainingOffDutyAmbulances, 0, checkpoint.remainingOffDutyAmbulances, 0,
+                remainingOffDutyAmbulances.length);
+        for (ShiftType shift : ShiftType.values()) {
+            checkpoint.shiftCounts.computeIfAbsent(shift, s -> new int[BaseStation.size()]);
+            System.arraycopy(baseStationShiftCount.get(shift), 0, checkpoint.shiftCounts.get(shift), 0,
+                    BaseStation.size());
+        }
+        checkpoint.responseTimes = responseTimes;
+        checkpoint.responseTimeCount = responseTimes.count();
+        checkpoint.time = time;
+        checkpoint.currentShift = currentShift;
+        checkpoint.shiftChanges = shiftChanges;
+    }
+
+    // The last checkpoint the run can resume from, or null if there is none
+    private Checkpoint findCheckpoint() {
+        Checkpoint last = null;
+        for (Checkpoint checkpoint : checkpoints) {
+            if ((last == null || checkpoint.shiftChanges > last.shiftChanges) && hasSameShiftCounts(checkpoint)
+                    && fleet.canTakeStateOf(checkpoint.fleet)) {
+                last = checkpoint;
+            }
+        }
+        if (last != null) {
+            last.lastUsed = runs;
+        }
+        return last;
+    }
+
+    // Whether the checkpoint is of the same calls and shift counts that the
+    // state up to it depends on as the current run
+    private boolean hasSameShiftCounts(Checkpoint checkpoint) {
+        ShiftType firstShift = ShiftType.get(config.START_DATE_TIME());
+        return checkpoint.calls == initialCalls
+                && Arrays.equals(checkpoint.shiftCounts.get(firstShift), baseStationShiftCount.get(firstShift))
+                && (checkpoint.shiftChanges == 0 || Arrays.equals(checkpoint.shiftCounts.get(firstShift.previous()),
+                        baseStationShiftCount.get(firstShift.previous())));
+    }
+
+    private void restore(Checkpoint checkpoint) {
+        fleet.copyFrom(checkpoint.fleet);
+        eventQueue.copyFrom(checkpoint.eventQueue, Type.JOB_COMPLETION, id -> fleet.idOf(checkpoint.fleet, id));
+        if (!eventQueue.isOrderedByType()) {
+            eventQueue.mapEntities(Type.LOCATION_UPDATE, id -> fleet.idOf(checkpoint.fleet, id));
+        }
+        callQueue.clear();
+        callQueue.addAll(checkpoint.callQueue);
+        requeuedCalls.clear();
+        requeuedCalls.addAll(checkpoint.requeuedCalls);
+        System.arraycopy(checkpoint.remainingOffDutyAmbulances, 0, remainingOffDutyAmbulances, 0,
+                remainingOffDutyAmbulances.length);
+        responseTimes.copyFrom(checkpoint.responseTimes, checkpoint.responseTimeCount);
+        time = checkpoint.time;
+        currentShift = checkpoint.currentShift;
+        shiftChanges = checkpoint.shiftChanges;
+    }
+
+    private void createMinimumResponseTimes() {
+        minimumResponseTimes = initialCalls.stream()
+                .filter(newCall -> newCall.providesResponseTime && newCall.incident.hasDepartureFromScene()
+                        && newCall.incident.hasArrivalAtScene())
+                .mapToLong(newCall -> Math.max(0, newCall.incident.getDispatchDelay())
+                        + DistanceIO.getMinimumTravelTime(newCall.incident.getLocation()))
+                .sorted()
+                .toArray();
+        minimumResponseTimeSums = new long[minimumResponseTimes.length + 1];
+        for (int i = 0; i < minimumResponseTimes.length; i++) {
+            minimumResponseTimeSums[i + 1] = minimumResponseTimeSums[i] + minimumResponseTimes[i];
+        }
+    }
+
+    // The least average the run can end with, if the calls yet to give a
+    // response time that can lower it do so at their least and the others do
+    // not respond at all. Each call responds at most once and never below its
+    // least response time, and the least of the remaining calls are taken to
+    // be the least of all. Adding the k least lowers the average until the
+    // next is no less than it, which is found by binary search.
+    private double averageLowerBound() {
+        long sum = responseTimes.sum();
+        int count = responseTimes.count();
+        int remaining = minimumResponseTimes.length - count;
+        int low = 0;
+        int high = remaining;
+        while (low < high) {
+            int k = (low + high) >>> 1;
+            if (count + k > 0 && minimumResponseTimes[k] * (count + k) >= sum + minimumResponseTimeSums[k]) {
+                high = k;
+            } else {
+                low = k + 1;
+            }
+        }
+        if (count + low == 0) {
+            return 0;
+        }
+        return (double) (sum + minimumResponseTimeSums[low]) / (count + low);
+    }
+
+    private record TimeWindow(LocalDateTime bufferStart, LocalDateTime start, LocalDateTime end) {
+    }
+
     private void createEventQueue() {
-        if (memoizedEventList.containsKey(config)) {
-            eventQueue.addAll(memoizedEventList.get(config));
-        } else {
-            List<NewCall> events = IncidentIO.incidents.stream()
-                    .filter(incident -> incident.callReceived()
-                            .isAfter(config.START_DATE_TIME().minusHours(config.BUFFER_SIZE()))
-                            && incident.callReceived().isBefore(config.END_DATE_TIME()))
-                    .map(incident -> new NewCall(incident, incident.callReceived().isAfter(config.START_DATE_TIME())))
+        LocalDateTime bufferStart = config.START_DATE_TIME().minusHours(config.BUFFER_SIZE());
+        startEpochSecond = IncidentStore.toEpochSecond(bufferStart);
+        List<NewCall> newCalls;
+        if (incidentGenerator != null) {
+            LocalDateTime start = config.START_DATE_TIME();
+            newCalls = incidentGenerator.generate(bufferStart, config.END_DATE_TIME(), replication)
+                    .map(incident -> new NewCall(incident, incident.callReceived().isAfter(start)))
                     .toList();
-            eventQueue.addAll(events);
-            memoizedEventList.put(config, events);
+        } else {
+            TimeWindow window = new TimeWindow(bufferStart, config.START_DATE_TIME(), config.END_DATE_TIME());
+            newCalls = memoizedEventList.computeIfAbsent(window, Simulation::createNewCalls);
+        }
+        if (newCalls != initialCalls) {
+            initialCalls = newCalls;
+            minimumResponseTimes = null;
+            initialEvents.clear();
+            for (int i = 0; i < initialCalls.size(); i++) {
+                long callReceived = initialCalls.get(i).incident.getCallReceivedEpochSecond();
+                initialEvents.add((int) (callReceived - startEpochSecond), Type.NEW_CALL, i);
+            }
+        }
+        eventQueue.copyFrom(initialEvents);
+        requeuedCalls.clear();
+    }
+
+    private NewCall getCall(int entity) {
+        return entity < initialCalls.size() ? initialCalls.get(entity)
+                : requeuedCalls.get(entity - initialCalls.size());
+    }
+
+    private void addNewCall(NewCall newCall, int time) {
+        eventQueue.add(time, Type.NEW_CALL, initialCalls.size() + requeuedCalls.size());
+        requeuedCalls.add(newCall);
+    }
+
+    private static List<NewCall> createNewCalls(TimeWindow window) {
+        long start = IncidentStore.toEpochSecond(window.start());
+        List<Incident> incidents = Parameters.USE_INCIDENT_ARCHIVE
+                ? IncidentArchive.getDefault().between(window.bufferStart(), window.end())
+                : IncidentIO.incidents.between(window.bufferStart(), window.end());
+        return incidents.stream()
+                .map(incident -> new NewCall(incident, incident.getCallReceivedEpochSecond() > start))
+                .toList();
+    }
+
+    // Moves the ambulance every update period from the given time until it
+    // reaches its destination. Ordered by type, the fleet moves it whenever its
+    // position is needed. Otherwise each move is an event, as simultaneous
+    // events are ordered by when they were added.
+    private void startLocationUpdates(int id, int firstUpdate) {
+        if (eventQueue.isOrderedByType()) {
+            fleet.startLocationUpdates(id, firstUpdate);
+        } else {
+            eventQueue.add(firstUpdate, Type.LOCATION_UPDATE, id);
+        }
+    }
+
+    // Takes the freed ambulance off duty if its base station still has too many
+    // ambulances for the current shift
+    private void returnOffDuty(int id) {
+        BaseStation baseStation = fleet.getBaseStation(id);
+        int ambulancesToReturn = remainingOffDutyAmbulances[baseStation.ordinal()];
+        if (ambulancesToReturn > 0) {
+            fleet.finishShift(id);
+            remainingOffDutyAmbulances[baseStation.ordinal()] = ambulancesToReturn - 1;
         }
     }
 
     private void initialize(final Allocation allocation) {
-        responseTimes = new ResponseTimes();
         callQueue.clear();
-        eventQueue.clear();
         createEventQueue();
+        // At most one response time per call
+        responseTimes = new ResponseTimes(initialCalls.size());
+        if (visualizationMode && eventQueue.isOrderedByType() && !eventQueue.isEmpty()) {
+            eventQueue.add(EventQueue.time(eventQueue.peek()), Type.LOCATION_UPDATE, 0);
+        }
         currentShift = ShiftType.get(config.START_DATE_TIME());
-        baseStationShiftCount.clear();
-        baseStationAmbulances.clear();
-        remainingOffDutyAmbulances.clear();
-        baseStationShiftCount.put(ShiftType.DAY, new HashMap<>());
-        baseStationShiftCount.put(ShiftType.NIGHT, new HashMap<>());
-
+        shiftChanges = 0;
+        processedEvents = 0;
+        Arrays.fill(remainingOffDutyAmbulances, 0);
+
+        int[] dayShiftCount = countPerBaseStation(allocation.getDayShiftAllocation(), ShiftType.DAY);
+        int[] nightShiftCount = countPerBaseStation(allocation.getNightShiftAllocation(), ShiftType.NIGHT);
+        for (int i = 0; i < ambulancesPerBaseStation.length; i++) {
+            ambulancesPerBaseStation[i] = Math.max(dayShiftCount[i], nightShiftCount[i]);
+        }
+        if (fleet == null) {
+            fleet = new FleetState(ambulancesPerBaseStation, config.UPDATE_LOCATION_PERIOD(), startEpochSecond);
+        } else {
+            fleet.reset(ambulancesPerBaseStation, startEpochSecond);
+        }
+        if (assignedAmbulances.length < fleet.size()) {
+            assignedAmbulances = new int[fleet.size()];
+        }
         for (BaseStation baseStation : BaseStation.values()) {
-            int dayShiftCount = Collections.frequency(allocation.getDayShiftAllocation(), baseStation.getId());
-            int nightShiftCount = Collections.frequency(allocation.getNightShiftAllocation(), baseStation.getId());
-            int maxBaseStationAmbulances = Math.max(dayShiftCount, nightShiftCount);
-            baseStationAmbulances.put(baseStation, Stream.generate(() -> new Ambulance(baseStation))
-                    .limit(maxBaseStationAmbulances).toList());
-            baseStationShiftCount.get(ShiftType.DAY).put(baseStation, dayShiftCount);
-            baseStationShiftCount.get(ShiftType.NIGHT).put(baseStation, nightShiftCount);
-            ambulances.addAll(baseStationAmbulances.get(baseStation));
-            remainingOffDutyAmbulances.put(baseStation, 0);
-            baseStationAmbulances.get(baseStation).stream()
-                    .limit(baseStationShiftCount.get(currentShift).get(baseStation)).forEach(Ambulance::startNewShift);
+            fleet.startShifts(baseStation, baseStationShiftCount.get(currentShift)[baseStation.ordinal()]);
         }
 
     }
 
+    // Counts the ambulances of each base station in the shift allocation, by
+    // station ordinal, into the counts kept for the shift
+    private int[] countPerBaseStation(List<Integer> shiftAllocation, ShiftType shift) {
+        int[] counts = baseStationShiftCount.computeIfAbsent(shift, s -> new int[BaseStation.size()]);
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < shiftAllocation.size(); i++) {
+            int id = shiftAllocation.get(i);
+            if (id >= 0 && id < counts.length) {
+                counts[id]++;
+            }
+        }
+        return counts;
+    }
+
     private void setCurrentShift() {
-        if (ShiftType.get(time) != currentShift) {
-            currentShift = ShiftType.get(time);
-            for (BaseStation baseStation : baseStationAmbulances.keySet()) {
-                int ambulanceDifference = (baseStationShiftCount.get(currentShift.previous()).get(baseStation)
-                        - baseStationShiftCount.get(currentShift).get(baseStation));
+        ShiftType shift = ShiftType.ofEpochSecond(startEpochSecond + time);
+        if (shift != currentShift) {
+            currentShift = shift;
+            shiftChanges++;
+            for (BaseStation baseStation : BaseStation.values()) {
+                int ambulanceDifference = (baseStationShiftCount.get(currentShift.previous())[baseStation.ordinal()]
+                        - baseStationShiftCount.get(currentShift)[baseStation.ordinal()]);
                 if (ambulanceDifference > 0) {
-                    List<Ambulance> availableAmbulances = baseStationAmbulances.get(baseStation)
-                            .stream()
-                            .filter(Ambulance::isAvailable)
-                            .limit(ambulanceDifference)
-                            .toList();
-                    availableAmbulances.forEach(Ambulance::finishShift);
-                    remainingOffDutyAmbulances.put(baseStation,
-                            ambulanceDifference - availableAmbulances.size());
+                    int finished = fleet.finishShifts(baseStation, ambulanceDifference);
+                    remainingOffDutyAmbulances[baseStation.ordinal()] = ambulanceDifference - finished;
                 } else if (ambulanceDifference < 0) {
-                    baseStationAmbulances.get(baseStation).stream().filter(Ambulance::isOffDuty)
-                            .limit(-ambulanceDifference).forEach(Ambulance::startNewShift);
+                    fleet.startShifts(baseStation, -ambulanceDifference);
                 }
             }
         }
     }
 
-    private List<Ambulance> dispatch(NewCall newCall) {
-        List<Ambulance> availableAmbulances = Utils.filterList(ambulances,
-                Ambulance::isAvailable);
-
-        int supply = availableAmbulances.size();
+    // Dispatches available ambulances to the call and returns how many, their
+    // ids being those selected by the fleet
+    private int dispatch(NewCall newCall) {
+        int supply = fleet.getAvailableCount();
 
         if (supply == 0) {
             callQueue.add(newCall);
-            return Collections.emptyList();
+            return 0;
         }
 
         int numberOfTransportAmbulances = newCall.getTransportingVehicleDemand();
         int numberOfNonTransportAmbulances = newCall.getNonTransportingVehicleDemand();
         Coordinate hospitalLocation = findNearestHospital(newCall.incident);
 
-        // Sort based on proximity
-        List<Ambulance> nearestAmbulances = new ArrayList<>(availableAmbulances);
-        nearestAmbulances.sort(config.DISPATCH_POLICY().useOn(newCall.incident));
+        // Only the nearest ambulances that are needed, based on proximity
+        int nearestAmbulances = fleet.selectNearestAvailable(config.DISPATCH_POLICY(),
+                newCall.incident.getLocation(), numberOfTransportAmbulances + numberOfNonTransportAmbulances);
 
         // Transport ambulances first
-        List<Ambulance> transportAmbulances = nearestAmbulances.subList(0,
-                Math.min(supply, numberOfTransportAmbulances));
-        transportAmbulances.forEach((ambulance) -> ambulance.dispatchTransport(newCall.incident, hospitalLocation));
-        List<Ambulance> dispatchedAmbulances = new ArrayList<>(transportAmbulances);
-
-        // Remove transport ambulances from the pool
-        nearestAmbulances = nearestAmbulances.subList(Math.min(supply, numberOfTransportAmbulances), supply);
+        int transportAmbulances = Math.min(nearestAmbulances, numberOfTransportAmbulances);
+        for (int i = 0; i < transportAmbulances; i++) {
+            fleet.dispatchTransport(fleet.getSelected(i), newCall.incident, hospitalLocation);
+        }
 
         // Non-transport ambulances second
-        List<Ambulance> nonTransportAmbulances = nearestAmbulances.subList(0,
-                Math.min(supply - transportAmbulances.size(), numberOfNonTransportAmbulances));
-        nonTransportAmbulances.forEach((ambulance) -> ambulance.dispatch(newCall.incident));
-        dispatchedAmbulances.addAll(nonTransportAmbulances);
+        int nonTransportAmbulances = nearestAmbulances - transportAmbulances;
+        for (int i = transportAmbulances; i < nearestAmbulances; i++) {
+            fleet.dispatch(fleet.getSelected(i), newCall.incident);
+        }
 
-        if (transportAmbulances.size() < newCall.getTransportingVehicleDemand()
-                || nonTransportAmbulances.size() < newCall.getNonTransportingVehicleDemand()) {
+        if (transportAmbulances < newCall.getTransportingVehicleDemand()
+                || nonTransportAmbulances < newCall.getNonTransportingVehicleDemand()) {
             PartiallyRespondedCall partiallyRespondedCall = new PartiallyRespondedCall(newCall);
-            partiallyRespondedCall.respondWithTransportingVehicles(transportAmbulances.size());
-            partiallyRespondedCall.respondWithNonTransportingVehicles(nonTransportAmbulances.size());
+            partiallyRespondedCall.respondWithTransportingVehicles(transportAmbulances);
+            partiallyRespondedCall.respondWithNonTransportingVehicles(nonTransportAmbulances);
             callQueue.add(partiallyRespondedCall);
         }
 
-        return dispatchedAmbulances;
+        return nearestAmbulances;
     }
 
     private void checkQueue() {
-        int availableAmbulances = (int) ambulances.stream().filter(Ambulance::isAvailable)
-                .count();
+        int availableAmbulances = fleet.getAvailableCount();
         while (!callQueue.isEmpty() && availableAmbulances > 0) {
+            // Put back as is rather than copied with the current time, as only
+            // the time of its event matters
             NewCall newCall = callQueue.poll();
-            if (newCall instanceof PartiallyRespondedCall call) {
-                eventQueue.add(new PartiallyRespondedCall(call, time));
-            } else {
-                eventQueue.add(new NewCall(newCall, time));
-            }
+            addNewCall(newCall, time);
             availableAmbulances -= newCall.getNonTransportingVehicleDemand() + newCall.getTransportingVehicleDemand();
         }
     }
 
-    private void saveResponseTime(NewCall newCall, Ambulance firstResponder) {
-        if (newCall.providesResponseTime && newCall.incident.arrivalAtScene().isPresent()) {
-            int simulatedDispatchTime = (int) ChronoUnit.SECONDS.between(newCall.incident.callReceived(),
-                    newCall.getTime());
+    private void saveResponseTime(NewCall newCall, int firstResponder) {
+        if (newCall.providesResponseTime && newCall.incident.hasArrivalAtScene()) {
+            int simulatedDispatchTime = (int) (startEpochSecond + time
+                    - newCall.incident.getCallReceivedEpochSecond());
             int dispatchTime = Math.max(simulatedDispatchTime, newCall.incident.getDispatchDelay());
 
-            int travelTime = firstResponder.timeTo(newCall.incident);
+            int travelTime = fleet.timeTo(firstResponder, newCall.incident);
 
             int responseTime = dispatchTime + travelTime;
             if (responseTime < 0) {
                 throw new IllegalStateException("Response time should never be negative");
             }
-            responseTimes.add(newCall.incident.callReceived(), newCall.incident.getLocation(), responseTime);
+            responseTimes.add(newCall.incident.getCallReceivedEpochSecond(), newCall.incident.getLocation(),
+                    responseTime);
         }
     }
 
+    // Number of events handled by the last call to simulate, not counting those
+    // skipped by resuming from a checkpoint
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    private LocalDateTime getDateTime() {
+        return IncidentStore.toDateTime(startEpochSecond + time);
+    }
+
     private void visualizationCallback() {
-        Ambulance.setCurrentGlobalTime(time);
-        onTimeUpdate.accept(time, ambulances, callQueue);
+        LocalDateTime dateTime = getDateTime();
+        fleet.updateLocations();
+        onTimeUpdate.accept(dateTime, fleet.getAmbulances(), callQueue);
         try {
             Thread.sleep(simulationUpdateInterval.longValue());
         } catch (InterruptedException e) {
@@ -383,9 +716,7 @@ public final class Simulation {
     }
 
     private static Coordinate findNearestHospital(Incident incident) {
-        List<Hospital> nearestHospitals = Arrays.asList(Hospital.values());
-        nearestHospitals.sort(Hospital.closestTo(incident));
-        return nearestHospitals.get(0).getCoordinate();
+        return NearestHospitals.nearest(incident.getLocation()).getCoordinate();
     }
 
 }
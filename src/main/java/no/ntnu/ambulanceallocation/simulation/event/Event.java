@@ -2,8 +2,9 @@ package no.ntnu.ambulanceallocation.simulation.event;
 
 import java.time.LocalDateTime;
 
-public abstract sealed class Event
-        implements Comparable<Event>permits NewCall, SceneDeparture, JobCompletion, LocationUpdate {
+// Events are scheduled as packed longs in an EventQueue, which alone orders
+// them
+public abstract sealed class Event permits NewCall {
 
     private final LocalDateTime time;
 
@@ -11,11 +12,6 @@ public abstract sealed class Event
         this.time = time;
     }
 
-    @Override
-    public int compareTo(Event otherEvent) {
-        return time.compareTo(otherEvent.time);
-    }
-
     public LocalDateTime getTime() {
         return time;
     }
@@ -0,0 +1,164 @@
+package no.ntnu.ambulanceallocation.simulation.event;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Binary min-heap of events packed into longs, so that scheduling an event
+ * neither allocates nor compares date times.
+ * <p>
+ * An event holds its time in seconds from the start of the simulation in the
+ * upper 32 bits, its {@link Type} in the next 3 bits and the id of the entity
+ * it concerns in the lower 29 bits.
+ * <p>
+ * Unless ordered by type, events are only compared by time. The heap adds and
+ * polls like {@link java.util.PriorityQueue}, so simultaneous events come out
+ * in the same order as from the PriorityQueue the simulation used to keep its
+ * events in, which depends on the order they were added in. Ordered by type,
+ * events are ordered by time, then type, then entity, and the order they are
+ * polled in does not depend on the order they were added in.
+ */
+public final class EventQueue {
+
+    // Simultaneous events ordered by type are handled in declaration order, so
+    // ambulances are freed before the calls arriving at the same second are
+    // dispatched
+    public enum Type {
+        JOB_COMPLETION,
+        SCENE_DEPARTURE,
+        LOCATION_UPDATE,
+        NEW_CALL;
+
+        private static final Type[] types = values();
+    }
+
+    private static final int TYPE_BITS = 3;
+    private static final int ENTITY_BITS = 32 - TYPE_BITS;
+    private static final int MAX_ENTITY = (1 << ENTITY_BITS) - 1;
+
+    private long[] heap = new long[256];
+    private int size = 0;
+    // Events are compared by the bits above this shift
+    private int keyShift;
+
+    public EventQueue() {
+        this(true);
+    }
+
+    public EventQueue(boolean orderedByType) {
+        keyShift = orderedByType ? 0 : 32;
+    }
+
+    public static long pack(int time, Type type, int entity) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Event time " + time + " is before the start of the simulation");
+        }
+        if (entity < 0 || entity > MAX_ENTITY) {
+            throw new IllegalArgumentException("Entity id " + entity + " does not fit in an event");
+        }
+        return (long) time << 32 | (long) type.ordinal() << ENTITY_BITS | entity;
+    }
+
+    public static int time(long event) {
+        return (int) (event >>> 32);
+    }
+
+    public static Type type(long event) {
+        return Type.types[(int) (event >>> ENTITY_BITS) & ((1 << TYPE_BITS) - 1)];
+    }
+
+    public static int entity(long event) {
+        return (int) event & MAX_ENTITY;
+    }
+
+    public void add(int time, Type type, int entity) {
+        add(pack(time, type, entity));
+    }
+
+    public void add(long event) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size);
+        }
+        int child = size++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (heap[parent] >>> keyShift <= event >>> keyShift) {
+                break;
+            }
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = event;
+    }
+
+    public long peek() {
+        if (size == 0) {
+            throw new IllegalStateException("The event queue is empty");
+        }
+        return heap[0];
+    }
+
+    public long poll() {
+        long first = peek();
+        long last = heap[--size];
+        int parent = 0;
+        int half = size >>> 1;
+        while (parent < half) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && heap[child + 1] >>> keyShift < heap[child] >>> keyShift) {
+                child++;
+            }
+            if (last >>> keyShift <= heap[child] >>> keyShift) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = last;
+        return first;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean isOrderedByType() {
+        return keyShift == 0;
+    }
+
+    // Replaces the events with those of the other queue, in its order
+    public void copyFrom(EventQueue other) {
+        if (heap.length < other.size) {
+            heap = new long[other.heap.length];
+        }
+        System.arraycopy(other.heap, 0, heap, 0, other.size);
+        size = other.size;
+        keyShift = other.keyShift;
+    }
+
+    // Replaces the events with those of the other queue, mapping the entities of
+    // the events of the type. The mapping must keep the order of the entities,
+    // so that the events keep theirs.
+    public void copyFrom(EventQueue other, Type type, IntUnaryOperator entityMapping) {
+        copyFrom(other);
+        mapEntities(type, entityMapping);
+    }
+
+    // Maps the entities of the events of the type, see copyFrom
+    public void mapEntities(Type type, IntUnaryOperator entityMapping) {
+        for (int i = 0; i < size; i++) {
+            if (type(heap[i]) == type) {
+                heap[i] = pack(time(heap[i]), type, entityMapping.applyAsInt(entity(heap[i])));
+            }
+        }
+    }
+
+}
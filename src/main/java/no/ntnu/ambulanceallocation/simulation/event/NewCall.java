@@ -1,7 +1,5 @@
 package no.ntnu.ambulanceallocation.simulation.event;
 
-import java.time.LocalDateTime;
-
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
 
 public sealed class NewCall extends Event permits PartiallyRespondedCall {
@@ -15,10 +13,10 @@ public sealed class NewCall extends Event permits PartiallyRespondedCall {
         this.providesResponseTime = providesResponseTime;
     }
 
-    public NewCall(NewCall newCall, LocalDateTime newTime) {
-        super(newTime);
+    protected NewCall(NewCall newCall, boolean providesResponseTime) {
+        super(newCall.getTime());
         this.incident = newCall.incident;
-        this.providesResponseTime = newCall.providesResponseTime;
+        this.providesResponseTime = providesResponseTime;
     }
 
     public int getTransportingVehicleDemand() {
@@ -1,26 +1,18 @@
 package no.ntnu.ambulanceallocation.simulation.event;
 
-import java.time.LocalDateTime;
-
 public final class PartiallyRespondedCall extends NewCall {
 
     private int numDispatchedTransportingVehicles = 0;
     private int numDispatchedNonTransportingVehicles = 0;
 
     public PartiallyRespondedCall(NewCall newCall) {
-        super(newCall.incident, false);
+        super(newCall, false);
         if (newCall instanceof PartiallyRespondedCall call) {
             this.numDispatchedTransportingVehicles = call.numDispatchedTransportingVehicles;
             this.numDispatchedNonTransportingVehicles = call.numDispatchedNonTransportingVehicles;
         }
     }
 
-    public PartiallyRespondedCall(PartiallyRespondedCall call, LocalDateTime newTime) {
-        super(call, newTime);
-        this.numDispatchedNonTransportingVehicles = call.numDispatchedNonTransportingVehicles;
-        this.numDispatchedTransportingVehicles = call.numDispatchedTransportingVehicles;
-    }
-
     @Override
     public int getTransportingVehicleDemand() {
         return incident.transportingVehicles() - numDispatchedTransportingVehicles;
@@ -0,0 +1,222 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled binary form of od.json, memory-mapped at startup so that
+ * concurrent JVMs share the page cache instead of parsing JSON onto the heap.
+ * <p>
+ * Layout, all values little-endian:
+ * <ul>
+ * <li>header: magic, version, cell count, estimated pair count (4 ints)</li>
+ * <li>cell index table: x, y (ints), id (long) and flags (int) per cell</li>
+ * <li>duration block: cell count^2 travel times in seconds, including
+ * estimates for pairs missing from od.json</li>
+ * <li>path block: cell count + 1 section offsets (longs), followed by one
+ * compressed path tree per origin, see {@link PathTree}</li>
+ * </ul>
+ */
+public final class BinaryDistanceIO {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryDistanceIO.class);
+
+    public static final String binaryDistancesFilePath = new File("src/main/resources/od.bin")
+            .getAbsolutePath();
+
+    private static final int MAGIC = 0x4F444D58; // "ODMX"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int CELL_SIZE = 3 * Integer.BYTES + Long.BYTES;
+    private static final int ORIGIN_FLAG = 1;
+    private static final long MAX_MAPPING_SIZE = 1L << 30;
+
+    private BinaryDistanceIO() {
+    }
+
+    // The binary file is only used while it is at least as new as od.json
+    public static boolean isUpToDate(Path binaryFile, Path jsonFile) {
+        try {
+            return Files.exists(binaryFile) && (!Files.exists(jsonFile)
+                    || Files.getLastModifiedTime(binaryFile).compareTo(Files.getLastModifiedTime(jsonFile)) >= 0);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void write(TravelTimeMatrix travelTimeMatrix, Path file) throws IOException {
+        int size = travelTimeMatrix.size();
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (OutputStream outputStream = Files.newOutputStream(temporaryFile);
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 20))) {
+            output.writeInt(Integer.reverseBytes(MAGIC));
+            output.writeInt(Integer.reverseBytes(VERSION));
+            output.writeInt(Integer.reverseBytes(size));
+            output.writeInt(Integer.reverseBytes(travelTimeMatrix.getEstimatedRoutes()));
+
+            for (int i = 0; i < size; i++) {
+                Coordinate coordinate = travelTimeMatrix.getCoordinate(i);
+                output.writeInt(Integer.reverseBytes(coordinate.x()));
+                output.writeInt(Integer.reverseBytes(coordinate.y()));
+                output.writeLong(Long.reverseBytes(coordinate.id()));
+                output.writeInt(Integer.reverseBytes(travelTimeMatrix.isOrigin(i) ? ORIGIN_FLAG : 0));
+            }
+
+            for (int origin = 0; origin < size; origin++) {
+                for (int destination = 0; destination < size; destination++) {
+                    output.writeInt(Integer.reverseBytes(travelTimeMatrix.getTravelTime(origin, destination)));
+                }
+            }
+
+            long sectionOffset = 0;
+            for (int origin = 0; origin <= size; origin++) {
+                output.writeLong(Long.reverseBytes(sectionOffset));
+                if (origin < size) {
+                    ByteBuffer pathSection = travelTimeMatrix.getPathSection(origin);
+                    sectionOffset += pathSection == null ? 0 : pathSection.remaining();
+                }
+            }
+            for (int origin = 0; origin < size; origin++) {
+                ByteBuffer pathSection = travelTimeMatrix.getPathSection(origin);
+                while (pathSection != null && pathSection.hasRemaining()) {
+                    output.writeByte(pathSection.get());
+                }
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static TravelTimeMatrix map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Layout layout = readLayout(channel, file);
+            ByteBuffer[] pathSections = mapPathSections(channel, layout.pathsPosition(), layout.sectionOffsets(),
+                    layout.coordinates().length);
+            return new TravelTimeMatrix(layout.coordinates(), layout.origins(), layout.travelTimes(),
+                    origin -> pathSections[origin], layout.estimatedRoutes());
+        }
+    }
+
+    // Maps the durations but leaves the path block on disk. Path sections are
+    // read per origin on first use and kept in a cache of cacheSize origins.
+    // The channel stays open for the lifetime of the matrix.
+    public static TravelTimeMatrix mapWithLazyPaths(Path file, int cacheSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            Layout layout = readLayout(channel, file);
+            return new TravelTimeMatrix(layout.coordinates(), layout.origins(), layout.travelTimes(),
+                    new PathSectionCache(channel, layout.pathsPosition(), layout.sectionOffsets(), cacheSize),
+                    layout.estimatedRoutes());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private record Layout(Coordinate[] coordinates, BitSet origins, TravelTimeStore travelTimes,
+            LongBuffer sectionOffsets, long pathsPosition, int estimatedRoutes) {
+    }
+
+    private static Layout readLayout(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = map(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Unsupported distance file format: " + file);
+        }
+        int size = header.getInt();
+        int estimatedRoutes = header.getInt();
+
+        long position = HEADER_SIZE;
+        ByteBuffer cells = map(channel, position, (long) size * CELL_SIZE);
+        Coordinate[] coordinates = new Coordinate[size];
+        BitSet origins = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            int x = cells.getInt();
+            int y = cells.getInt();
+            long id = cells.getLong();
+            coordinates[i] = new Coordinate(x, y, id, i);
+            origins.set(i, (cells.getInt() & ORIGIN_FLAG) != 0);
+        }
+        position += (long) size * CELL_SIZE;
+
+        long travelTimesSize = (long) size * size * Integer.BYTES;
+        if (travelTimesSize > Integer.MAX_VALUE) {
+            throw new IOException("Duration block too large to map: " + travelTimesSize);
+        }
+        IntBuffer travelTimes = map(channel, position, travelTimesSize).asIntBuffer();
+        position += travelTimesSize;
+
+        LongBuffer sectionOffsets = map(channel, position, (long) (size + 1) * Long.BYTES).asLongBuffer();
+        position += (long) (size + 1) * Long.BYTES;
+
+        return new Layout(coordinates, origins, TravelTimeStore.of(travelTimes, size), sectionOffsets, position,
+                estimatedRoutes);
+    }
+
+    // Sections are grouped into mappings of at most MAX_MAPPING_SIZE bytes, as a
+    // single mapping cannot exceed 2 GB
+    private static ByteBuffer[] mapPathSections(FileChannel channel, long position, LongBuffer sectionOffsets,
+            int size) throws IOException {
+        ByteBuffer[] pathSections = new ByteBuffer[size];
+        int first = 0;
+        while (first < size) {
+            long mappingStart = sectionOffsets.get(first);
+            int last = first;
+            while (last < size && sectionOffsets.get(last + 1) - mappingStart <= MAX_MAPPING_SIZE) {
+                last++;
+            }
+            if (last == first) {
+                throw new IOException("Path section too large to map for origin " + first);
+            }
+            long mappingSize = sectionOffsets.get(last) - mappingStart;
+            ByteBuffer mapping = mappingSize == 0 ? null : map(channel, position + mappingStart, mappingSize);
+            for (int origin = first; origin < last; origin++) {
+                int start = (int) (sectionOffsets.get(origin) - mappingStart);
+                int end = (int) (sectionOffsets.get(origin + 1) - mappingStart);
+                if (end > start) {
+                    pathSections[origin] = mapping.slice(start, end - start).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            first = last;
+        }
+        return pathSections;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path jsonFile = Path.of(DistanceIO.distancesFilePath);
+        Path binaryFile = Path.of(binaryDistancesFilePath);
+        if (!Files.exists(jsonFile)) {
+            logger.error("Cannot find {}", jsonFile);
+            return;
+        }
+        if (isUpToDate(binaryFile, jsonFile)) {
+            logger.info("{} is already up to date.", binaryFile);
+            return;
+        }
+        logger.info("Compiling {} into {} ...", jsonFile, binaryFile);
+        write(DistanceIO.travelTimeMatrix, binaryFile);
+        logger.info("Wrote {} MB.", Files.size(binaryFile) / (1024 * 1024));
+    }
+
+}
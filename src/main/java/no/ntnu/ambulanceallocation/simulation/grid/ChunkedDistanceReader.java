@@ -0,0 +1,273 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Parses od.json on all cores.
+ * <p>
+ * The file is split at the start of top-level origin entries. Only origin
+ * keys are followed by an object, as destination values are arrays, so a
+ * split point can be found by scanning forward for a key followed by '{'.
+ * Each chunk is parsed into its own {@link Chunk}, holding coordinates as
+ * chunk-local ids together with the tokens they were read from. Chunks share
+ * no state while parsing. The caller resolves the tokens of every chunk in
+ * file order, which registers coordinates in the same order as a sequential
+ * read, and then remaps the chunks to global indices.
+ * <p>
+ * Worker threads must not touch {@link DistanceIO} or create coordinates, as
+ * that would block on the static initialization of DistanceIO.
+ */
+final class ChunkedDistanceReader {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ChunkedDistanceReader() {
+    }
+
+    record Origin(int origin, int[] destinations, double[] durations, int[][] paths, int length) {
+    }
+
+    static final class Chunk {
+
+        // Tokens in order of first appearance, either a String key or a Long
+        // grid id. The local id of a coordinate is its position in this list.
+        private final List<Object> tokens = new ArrayList<>();
+        private final Map<String, Integer> keyIds = new HashMap<>();
+        private final Map<Long, Integer> gridIds = new HashMap<>();
+        private final List<Origin> origins = new ArrayList<>();
+
+        List<Object> tokens() {
+            return tokens;
+        }
+
+        List<Origin> origins() {
+            return origins;
+        }
+
+        private int idOf(String key) {
+            Integer id = keyIds.get(key);
+            if (id == null) {
+                id = tokens.size();
+                tokens.add(key);
+                keyIds.put(key, id);
+            }
+            return id;
+        }
+
+        private int idOf(long gridId) {
+            Integer id = gridIds.get(gridId);
+            if (id == null) {
+                id = tokens.size();
+                tokens.add(gridId);
+                gridIds.put(gridId, id);
+            }
+            return id;
+        }
+
+        private void remap(int[] indices) {
+            for (Origin origin : origins) {
+                for (int i = 0; i < origin.length(); i++) {
+                    origin.destinations()[i] = indices[origin.destinations()[i]];
+                    int[] path = origin.paths()[i];
+                    if (path != null) {
+                        for (int j = 0; j < path.length; j++) {
+                            path[j] = indices[path[j]];
+                        }
+                    }
+                }
+            }
+            origins.replaceAll(origin -> new Origin(indices[origin.origin()], origin.destinations(),
+                    origin.durations(), origin.paths(), origin.length()));
+        }
+    }
+
+    static List<Chunk> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = findBoundaries(channel);
+            try {
+                return IntStream.range(0, boundaries.length - 1)
+                        .parallel()
+                        .mapToObj(i -> readChunk(channel, boundaries[i], boundaries[i + 1],
+                                i == boundaries.length - 2))
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // indices holds the global index for every local id, one array per chunk
+    static void remap(List<Chunk> chunks, int[][] indices) {
+        IntStream.range(0, chunks.size()).parallel().forEach(i -> chunks.get(i).remap(indices[i]));
+    }
+
+    private static long[] findBoundaries(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        long first = find(channel, 0, (byte) '{');
+        if (first < 0) {
+            throw new IOException("Distance file is not a json object");
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        long chunks = Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, fileSize / MIN_CHUNK_SIZE));
+
+        TreeSet<Long> boundaries = new TreeSet<>();
+        boundaries.add(first + 1);
+        for (long i = 1; i < chunks; i++) {
+            long boundary = findOriginStart(channel, fileSize * i / chunks);
+            if (boundary < 0) {
+                break;
+            }
+            boundaries.add(boundary);
+        }
+        boundaries.add(fileSize);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Finds the opening quote of the first origin key at or after position. Keys
+    // contain no quotes, so the quote before a key's closing quote opens it.
+    private static long findOriginStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long start = position;
+        long previousQuote = -1;
+        long lastQuote = -1;
+        int state = 0; // 0: scanning, 1: after a quote, 2: after a quote and ':'
+        while (channel.read(buffer.clear(), position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '"') {
+                    previousQuote = lastQuote;
+                    lastQuote = position + buffer.position() - 1;
+                    state = 1;
+                } else if (Character.isWhitespace(b)) {
+                    continue;
+                } else if (state == 1 && b == ':') {
+                    state = 2;
+                } else if (state == 2 && b == '{' && previousQuote >= start) {
+                    return previousQuote;
+                } else {
+                    state = 0;
+                }
+            }
+            position += buffer.limit();
+        }
+        return -1;
+    }
+
+    private static long find(FileChannel channel, long position, byte value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        while (channel.read(buffer.clear(), position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == value) {
+                    return position + buffer.position() - 1;
+                }
+            }
+            position += buffer.limit();
+        }
+        return -1;
+    }
+
+    private static Chunk readChunk(FileChannel channel, long start, long end, boolean last) {
+        try {
+            long length = end - start;
+            if (length > Integer.MAX_VALUE - 2) {
+                throw new IOException("Distance file chunk too large: " + length);
+            }
+            // Wrap the entries in braces so that the chunk is a json object
+            byte[] bytes = new byte[(int) length + 2];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, (int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position() - 1) < 0) {
+                    throw new IOException("Unexpected end of distance file");
+                }
+            }
+            // Drop the separating comma, or the closing brace of the file for the
+            // last chunk
+            int contentEnd = (int) length + 1;
+            while (contentEnd > 1 && Character.isWhitespace(bytes[contentEnd - 1])) {
+                contentEnd--;
+            }
+            if (contentEnd > 1 && bytes[contentEnd - 1] == (last ? '}' : ',')) {
+                contentEnd--;
+            }
+            bytes[0] = '{';
+            bytes[contentEnd] = '}';
+            return parse(bytes, contentEnd + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Chunk parse(byte[] bytes, int length) throws IOException {
+        Chunk chunk = new Chunk();
+        int[] destinations = new int[1024];
+        double[] durations = new double[1024];
+        int[][] paths = new int[1024][];
+        int[] path = new int[64];
+
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                int origin = chunk.idOf(reader.nextName());
+                int routes = 0;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    int destination = chunk.idOf(reader.nextName());
+                    reader.beginArray();
+                    double duration = reader.nextDouble();
+                    reader.nextDouble(); // distance
+                    int[] route = null;
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        int pathLength = 0;
+                        reader.beginArray();
+                        while (reader.hasNext() && reader.peek() == JsonToken.NUMBER) {
+                            if (pathLength == path.length) {
+                                path = Arrays.copyOf(path, 2 * pathLength);
+                            }
+                            path[pathLength++] = chunk.idOf(reader.nextLong());
+                        }
+                        route = Arrays.copyOf(path, pathLength);
+                        reader.endArray();
+                    }
+                    if (routes == destinations.length) {
+                        destinations = Arrays.copyOf(destinations, 2 * routes);
+                        durations = Arrays.copyOf(durations, 2 * routes);
+                        paths = Arrays.copyOf(paths, 2 * routes);
+                    }
+                    destinations[routes] = destination;
+                    durations[routes] = duration;
+                    paths[routes] = route;
+                    routes++;
+                    reader.endArray();
+                }
+                chunk.origins.add(new Origin(origin, Arrays.copyOf(destinations, routes),
+                        Arrays.copyOf(durations, routes), Arrays.copyOf(paths, routes), routes));
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        return chunk;
+    }
+
+}
@@ -2,10 +2,18 @@ package no.ntnu.ambulanceallocation.simulation.grid;
 
 import java.util.List;
 
-public record Coordinate(int x, int y, long id) {
+public record Coordinate(int x, int y, long id, int index) {
 
-    private static final double FALSE_EASTING = 2_000_000.0;
-    private static final double GRID_SIZE = 1_000.0;
+    public static final int UNINDEXED = -1;
+
+    private static final int FALSE_EASTING = 2_000_000;
+    private static final int GRID_SIZE = 1_000;
+    private static final long ID_OFFSET = 20_000_000_000_000L;
+    private static final long ID_EASTING_FACTOR = 10_000_000L;
+
+    public Coordinate(int x, int y, long id) {
+        this(x, y, id, DistanceIO.indexOf(x, y));
+    }
 
     public Coordinate(int x, int y) {
         this(x, y, getId(x, y));
@@ -16,19 +24,25 @@ public record Coordinate(int x, int y, long id) {
     }
 
     public Coordinate(Coordinate coordinate) {
-        this(coordinate.x(), coordinate.y(), coordinate.id());
+        this(coordinate.x(), coordinate.y(), coordinate.id(), coordinate.index());
     }
 
     public boolean routeExists(Coordinate other) {
-        return DistanceIO.getRoute(this, other) != null;
+        return DistanceIO.routeExists(this, other);
     }
 
     public Coordinate[] pathTo(Coordinate other) {
-        return DistanceIO.getRoute(this, other).path();
+        return DistanceIO.getPath(this, other);
+    }
+
+    // Decodes the path into the array if it fits and returns its length, or -1
+    // if there is no path
+    public int pathTo(Coordinate other, Coordinate[] path) {
+        return DistanceIO.getPath(this, other, path);
     }
 
     public int timeTo(Coordinate other) {
-        return (int) Math.round(DistanceIO.getRoute(this, other).distance());
+        return DistanceIO.getTravelTime(this, other);
     }
 
     public double euclideanDistanceTo(Coordinate other) {
@@ -40,40 +54,53 @@ public record Coordinate(int x, int y, long id) {
     }
 
     public List<Coordinate> getNeighbors() {
-        return DistanceIO.coordinateNeighbors.get(this);
+        return GridIO.getSpatialIndex().getNeighbors(this);
     }
 
     public List<Coordinate> getNeighbors(int radius) {
-        return DistanceIO.coordinateNeighbors.get(this).stream().filter(c -> c.euclideanDistanceTo(this) <= radius)
-                .toList();
+        return GridIO.getSpatialIndex().getNeighbors(this, radius);
     }
 
     public int getNearbyAverageTravelTimeTo(Coordinate coordinate) {
-        return (int) Math.round(
-                getNeighbors(1200).stream().mapToInt(c -> c.timeTo(coordinate)).average()
-                        .orElse(this.timeTo(coordinate)));
+        return NearbyTravelTimes.get(this, coordinate);
     }
 
     private static int getGridCornerEasting(int easting) {
-        return (int) (Math.floor((easting + FALSE_EASTING) / GRID_SIZE) * GRID_SIZE - FALSE_EASTING);
+        return Math.floorDiv(easting + FALSE_EASTING, GRID_SIZE) * GRID_SIZE - FALSE_EASTING;
     }
 
     private static int getGridCornerNorthing(int northing) {
-        return (int) (Math.floor(northing / GRID_SIZE) * GRID_SIZE);
+        return Math.floorDiv(northing, GRID_SIZE) * GRID_SIZE;
     }
 
-    private static int getGridCentroidEastingFromId(long id) {
-        return (int) (((int) (id / Math.pow(10, 7))) - 2 * Math.pow(10, 6) + GRID_SIZE / 2);
+    static int getGridCentroidEastingFromId(long id) {
+        return (int) (id / ID_EASTING_FACTOR) - FALSE_EASTING + GRID_SIZE / 2;
     }
 
-    private static int getGridCentroidNorthingFromId(long id) {
-        return (int) (id - ((int) (id / Math.pow(10, 7))) * Math.pow(10, 7) + GRID_SIZE / 2);
+    static int getGridCentroidNorthingFromId(long id) {
+        return (int) (id % ID_EASTING_FACTOR) + GRID_SIZE / 2;
     }
 
-    private static long getId(int easting, int northing) {
+    static long getId(int easting, int northing) {
         int gridEasting = getGridCornerEasting(easting);
         int gridNorthing = getGridCornerNorthing(northing);
-        return (long) (2 * Math.pow(10, 13) + gridEasting * Math.pow(10, 7) + gridNorthing);
+        return ID_OFFSET + gridEasting * ID_EASTING_FACTOR + gridNorthing;
+    }
+
+    // The index is derived from the position, so it takes no part in equality
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Coordinate coordinate))
+            return false;
+        return x == coordinate.x && y == coordinate.y && id == coordinate.id;
+    }
+
+    @Override
+    public int hashCode() {
+        // Same value as Objects.hash(x, y, id), without the varargs array
+        return 31 * (31 * (31 + x) + y) + Long.hashCode(id);
     }
 
     public String toString() {
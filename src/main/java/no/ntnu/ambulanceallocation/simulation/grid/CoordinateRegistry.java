@@ -0,0 +1,156 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Interns every cell of the travel time matrix once. The index of a
+ * coordinate is its position in the registry, and lookups by position use an
+ * open addressing table of primitive keys, so they allocate nothing.
+ * <p>
+ * The registry is filled while {@link DistanceIO} loads and is read-only
+ * afterwards.
+ */
+public final class CoordinateRegistry {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final List<Coordinate> coordinates = new ArrayList<>();
+    private long[] keys = new long[1 << 10];
+    private int[] indices = new int[1 << 10];
+    private double[] latitudes = new double[0];
+    private double[] longitudes = new double[0];
+
+    CoordinateRegistry() {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public int size() {
+        return coordinates.size();
+    }
+
+    public Coordinate get(int index) {
+        return coordinates.get(index);
+    }
+
+    public List<Coordinate> getCoordinates() {
+        return Collections.unmodifiableList(coordinates);
+    }
+
+    public int indexOf(int x, int y) {
+        long key = getKey(x, y);
+        for (int slot = slotOf(key);; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key) {
+                return indices[slot];
+            }
+            if (keys[slot] == EMPTY) {
+                return Coordinate.UNINDEXED;
+            }
+        }
+    }
+
+    // Returns the canonical instance, or a new unindexed coordinate for
+    // positions outside the travel time matrix
+    public Coordinate intern(int x, int y) {
+        int index = indexOf(x, y);
+        if (index == Coordinate.UNINDEXED) {
+            return new Coordinate(x, y, Coordinate.getId(x, y), Coordinate.UNINDEXED);
+        }
+        return coordinates.get(index);
+    }
+
+    public Coordinate intern(long id) {
+        return intern(Coordinate.getGridCentroidEastingFromId(id), Coordinate.getGridCentroidNorthingFromId(id));
+    }
+
+    public boolean hasLatLong(int index) {
+        return index < latitudes.length && !Double.isNaN(latitudes[index]);
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[index];
+    }
+
+    Coordinate register(int x, int y) {
+        return register(x, y, Coordinate.getId(x, y));
+    }
+
+    Coordinate register(long id) {
+        return register(Coordinate.getGridCentroidEastingFromId(id), Coordinate.getGridCentroidNorthingFromId(id),
+                id);
+    }
+
+    Coordinate register(int x, int y, long id) {
+        int index = indexOf(x, y);
+        if (index != Coordinate.UNINDEXED) {
+            return coordinates.get(index);
+        }
+        Coordinate coordinate = new Coordinate(x, y, id, coordinates.size());
+        coordinates.add(coordinate);
+        put(getKey(x, y), coordinate.index());
+        return coordinate;
+    }
+
+    // Adopts a coordinate created with its final index, such as one read from
+    // od.bin
+    void add(Coordinate coordinate) {
+        if (coordinate.index() != coordinates.size()
+                || indexOf(coordinate.x(), coordinate.y()) != Coordinate.UNINDEXED) {
+            throw new IllegalArgumentException("Cannot register " + coordinate + " at index " + coordinates.size());
+        }
+        coordinates.add(coordinate);
+        put(getKey(coordinate.x(), coordinate.y()), coordinate.index());
+    }
+
+    void setLatLong(int index, double latitude, double longitude) {
+        if (latitudes.length < coordinates.size()) {
+            int length = latitudes.length;
+            latitudes = Arrays.copyOf(latitudes, coordinates.size());
+            longitudes = Arrays.copyOf(longitudes, coordinates.size());
+            Arrays.fill(latitudes, length, latitudes.length, Double.NaN);
+            Arrays.fill(longitudes, length, longitudes.length, Double.NaN);
+        }
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+    }
+
+    private void put(long key, int index) {
+        if (2 * (coordinates.size() + 1) > keys.length) {
+            long[] oldKeys = keys;
+            int[] oldIndices = indices;
+            keys = new long[2 * oldKeys.length];
+            indices = new int[2 * oldKeys.length];
+            Arrays.fill(keys, EMPTY);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    insert(oldKeys[i], oldIndices[i]);
+                }
+            }
+        }
+        insert(key, index);
+    }
+
+    private void insert(long key, int index) {
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        indices[slot] = index;
+    }
+
+    private int slotOf(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+
+    private static long getKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+}
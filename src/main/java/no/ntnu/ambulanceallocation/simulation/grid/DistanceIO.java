@@ -3,137 +3,244 @@ package no.ntnu.ambulanceallocation.simulation.grid;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonToken;
-
 import no.ntnu.ambulanceallocation.CSV;
-import no.ntnu.ambulanceallocation.utils.Tuple;
+import no.ntnu.ambulanceallocation.ChunkedCSVReader;
+import no.ntnu.ambulanceallocation.Parameters;
 
 public final class DistanceIO {
 
     public static final String distancesFilePath = new File("src/main/resources/od.json")
             .getAbsolutePath();
     public static final Set<Coordinate> uniqueGridCoordinates = new HashSet<>();
-    public static final Map<Coordinate, List<Coordinate>> coordinateNeighbors = new HashMap<>();
-    public static final Map<Tuple<Coordinate>, OneToManyRoutes> distances = new HashMap<>();
-    public static final Map<String, Coordinate> coordinateStringCache = new HashMap<>();
-    public static final Map<Long, Coordinate> coordinateLongCache = new HashMap<>();
     private static final Logger logger = LoggerFactory.getLogger(DistanceIO.class);
-    public static final Map<Tuple<Double>, Coordinate> latLongToUtmMap = new HashMap<>();
-    public static final Map<Long, Tuple<Double>> utmToLatLongMap = new HashMap<>();
+    // Must be initialized before the static block, as coordinates created while
+    // loading look up their index here
+    public static final CoordinateRegistry coordinateRegistry = new CoordinateRegistry();
+    public static final TravelTimeMatrix travelTimeMatrix;
 
     static {
+        travelTimeMatrix = Parameters.QUANTIZED_TRAVEL_TIMES ? quantize(loadTravelTimeMatrix())
+                : loadTravelTimeMatrix();
         loadUTMToLatLongMap();
-        loadDistancesFromFile();
-        coordinateStringCache.clear();
     }
 
+    public static int indexOf(int x, int y) {
+        return coordinateRegistry.indexOf(x, y);
+    }
+
+    public static int indexOf(Coordinate coordinate) {
+        if (coordinate.index() != Coordinate.UNINDEXED) {
+            return coordinate.index();
+        }
+        return indexOf(coordinate.x(), coordinate.y());
+    }
+
+    public static boolean routeExists(Coordinate from, Coordinate to) {
+        int origin = indexOf(from);
+        int destination = indexOf(to);
+        return origin != Coordinate.UNINDEXED && destination != Coordinate.UNINDEXED
+                && travelTimeMatrix.hasRoute(origin, destination);
+    }
+
+    public static int getTravelTime(Coordinate from, Coordinate to) {
+        if (from.index() != Coordinate.UNINDEXED && to.index() != Coordinate.UNINDEXED) {
+            int travelTime = travelTimeMatrix.getTravelTime(from.index(), to.index());
+            if (travelTime != TravelTimeMatrix.NO_ROUTE) {
+                return travelTime;
+            }
+        }
+        requireRoute(from, to);
+        return travelTimeMatrix.getTravelTime(indexOf(from), indexOf(to));
+    }
+
+    // No travel time to the coordinate is less, or 0 if it is not in the matrix
+    public static int getMinimumTravelTime(Coordinate to) {
+        int destination = indexOf(to);
+        return destination == Coordinate.UNINDEXED ? 0 : travelTimeMatrix.getMinimumTravelTime(destination);
+    }
+
+    public static Coordinate[] getPath(Coordinate from, Coordinate to) {
+        return getExistingRoute(from, to).path();
+    }
+
+    // Decodes the path into the array if it fits and returns its length, or -1
+    // if there is no path
+    public static int getPath(Coordinate from, Coordinate to, Coordinate[] path) {
+        requireRoute(from, to);
+        return travelTimeMatrix.getPath(indexOf(from), indexOf(to), path);
+    }
+
+    // Compatibility view over the travel time matrix
     public static OneToManyRoutes getRoute(Coordinate from, Coordinate to) {
         // TODO: What if origin and destination are the same?
         // if (from.equals(to)) {
         // return new OneToManyRoutes(from, to, 0, null);
         // }
-        if (!distances.containsKey(new Tuple<>(from, to))) {
-            logger.info("Failed to find distance from {} to {}",
+        if (!routeExists(from, to)) {
+            logger.debug("Failed to find distance from {} to {}",
                     from.id(), to.id());
             return null;
         }
-        return distances.get(new Tuple<>(from, to));
+        int origin = indexOf(from);
+        int destination = indexOf(to);
+        return new OneToManyRoutes(from, to, travelTimeMatrix.getTravelTime(origin, destination),
+                travelTimeMatrix.getPath(origin, destination));
+    }
+
+    private static OneToManyRoutes getExistingRoute(Coordinate from, Coordinate to) {
+        OneToManyRoutes route = getRoute(from, to);
+        if (route == null) {
+            throw new IllegalStateException(String.format("No route from %s to %s", from, to));
+        }
+        return route;
+    }
+
+    private static void requireRoute(Coordinate from, Coordinate to) {
+        if (!routeExists(from, to)) {
+            throw new IllegalStateException(String.format("No route from %s to %s", from, to));
+        }
     }
 
     public static void loadUTMToLatLongMap() {
-        try {
-            CSV.readCSVThenParse("utm_and_latlong.csv", values -> {
-                Coordinate coordinate = new Coordinate(Double.valueOf(values[0]).intValue(),
-                        Double.valueOf(values[1]).intValue());
-                latLongToUtmMap.put(new Tuple<>(Double.valueOf(values[2]), Double.valueOf(values[3])), coordinate);
-                utmToLatLongMap.put(coordinate.id(),
-                        new Tuple<>(Double.valueOf(values[2]), Double.valueOf(values[3])));
-            });
+        try (InputStream inputStream = CSV.class.getResourceAsStream("utm_and_latlong.csv")) {
+            ChunkedCSVReader.Result<List<double[]>> result = ChunkedCSVReader.read(inputStream, 0,
+                    new LatLongParser());
+            for (List<double[]> chunk : result.chunks()) {
+                for (double[] values : chunk) {
+                    int index = coordinateRegistry.indexOf((int) values[0], (int) values[1]);
+                    if (index != Coordinate.UNINDEXED) {
+                        coordinateRegistry.setLatLong(index, values[2], values[3]);
+                    }
+                }
+            }
         } catch (IOException | NumberFormatException e) {
             logger.error("Failed to load utm and latlong map {}", e);
         }
     }
 
-    private static Coordinate getCoordinateFromLong(Long gridId) {
-        if (coordinateLongCache.containsKey(gridId)) {
-            return coordinateLongCache.get(gridId);
+    // Runs on worker threads while DistanceIO is initializing, so it must not use
+    // the static members of DistanceIO
+    private static final class LatLongParser implements ChunkedCSVReader.RowParser<List<double[]>> {
+
+        @Override
+        public List<double[]> newChunk() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean parse(ChunkedCSVReader.Row row, List<double[]> chunk) {
+            chunk.add(new double[] { row.parseDouble(0), row.parseDouble(1), row.parseDouble(2),
+                    row.parseDouble(3) });
+            return true;
         }
-        Coordinate coordinate = new Coordinate(gridId);
-        coordinateLongCache.put(gridId, coordinate);
-        return coordinate;
+
     }
 
     private static Coordinate getCoordinateFromString(String coordinateString) {
-        if (coordinateStringCache.containsKey(coordinateString)) {
-            return coordinateStringCache.get(coordinateString);
-        }
-        Coordinate coordinate;
         try {
-            long gridId = Long.parseLong(coordinateString);
-            coordinate = getCoordinateFromLong(gridId);
+            return coordinateRegistry.register(Long.parseLong(coordinateString));
         } catch (NumberFormatException e) {
             String[] utmCoordinates = coordinateString.split("_");
             int easting = Integer.parseInt(utmCoordinates[1]);
             int northing = Integer.parseInt(utmCoordinates[2]);
-            coordinate = new Coordinate(easting, northing);
+            return coordinateRegistry.register(easting, northing);
         }
-        coordinateStringCache.put(coordinateString, coordinate);
-        return coordinate;
     }
 
-    private static void loadDistancesFromFile() {
-        logger.info("Loading distances from file...");
-        try (
-                InputStream inputStream = Files.newInputStream(Path.of(distancesFilePath));
-                JsonReader reader = new JsonReader(new InputStreamReader(inputStream));) {
-            reader.beginObject();
-            while (reader.hasNext()) {
-                Coordinate origin = getCoordinateFromString(reader.nextName());
-                uniqueGridCoordinates.add(origin);
-                reader.beginObject();
-                while (reader.hasNext()) {
-                    Coordinate destination = getCoordinateFromString(reader.nextName());
-                    JsonToken token = reader.peek();
-                    reader.beginArray();
-                    double duration = reader.nextDouble();
-                    double distance = reader.nextDouble();
-                    Coordinate[] arr = null;
-                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
-                        List<Coordinate> route = new ArrayList<>();
-                        reader.beginArray();
-                        while (reader.hasNext() && reader.peek() == JsonToken.NUMBER) {
-                            route.add(getCoordinateFromLong(reader.nextLong()));
-                        }
-                        arr = route.toArray(new Coordinate[route.size()]);
-                        reader.endArray();
+    // The exact matrix is unreachable once this returns, so it can be collected
+    // before any simulation allocates its state. While quantizing, both are
+    // held: exact travel times loaded from json are on the heap, while those
+    // mapped from the binary file are not.
+    private static TravelTimeMatrix quantize(TravelTimeMatrix travelTimeMatrix) {
+        long startTime = System.nanoTime();
+        TravelTimeMatrix quantized = travelTimeMatrix.quantized();
+        logger.info("Quantized travel times to {} MB off-heap in {} ms, with a maximum error of {} s.",
+                (long) quantized.size() * quantized.size() * Short.BYTES / (1 << 20),
+                (System.nanoTime() - startTime) / 1_000_000, quantized.getMaxQuantizationError());
+        return quantized;
+    }
+
+    private static TravelTimeMatrix loadTravelTimeMatrix() {
+        Path binaryFile = Path.of(BinaryDistanceIO.binaryDistancesFilePath);
+        if (BinaryDistanceIO.isUpToDate(binaryFile, Path.of(distancesFilePath))) {
+            try {
+                long startTime = System.nanoTime();
+                TravelTimeMatrix travelTimeMatrix = Parameters.LAZY_PATH_LOADING
+                        ? BinaryDistanceIO.mapWithLazyPaths(binaryFile, Parameters.PATH_CACHE_SIZE)
+                        : BinaryDistanceIO.map(binaryFile);
+                for (int i = 0; i < travelTimeMatrix.size(); i++) {
+                    Coordinate coordinate = travelTimeMatrix.getCoordinate(i);
+                    coordinateRegistry.add(coordinate);
+                    if (travelTimeMatrix.isOrigin(i)) {
+                        uniqueGridCoordinates.add(coordinate);
                     }
-                    distances.put(new Tuple<>(origin, destination),
-                            new OneToManyRoutes(origin, destination, duration, arr));
-                    reader.endArray();
+                }
+                logger.info("Mapped distances between {} coordinates from {} in {} ms.", travelTimeMatrix.size(),
+                        binaryFile, (System.nanoTime() - startTime) / 1_000_000);
+                logger.info("{} missing travel times are estimated.", travelTimeMatrix.getEstimatedRoutes());
+                return travelTimeMatrix;
+            } catch (IOException e) {
+                logger.error("Failed to map binary distances, falling back to json {}", e);
+            }
+        } else if (Parameters.LAZY_PATH_LOADING) {
+            logger.warn("Lazy path loading requires an up to date {}, loading all paths from json.", binaryFile);
+        }
+        return loadDistancesFromFile();
+    }
+
+    private static TravelTimeMatrix loadDistancesFromFile() {
+        logger.info("Loading distances from file...");
+        long startTime = System.nanoTime();
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        int origins = 0;
 
+        try {
+            List<ChunkedDistanceReader.Chunk> chunks = ChunkedDistanceReader.read(Path.of(distancesFilePath));
+            // Resolving the tokens chunk by chunk registers coordinates in file order
+            int[][] indices = new int[chunks.size()][];
+            for (int i = 0; i < chunks.size(); i++) {
+                List<Object> tokens = chunks.get(i).tokens();
+                indices[i] = new int[tokens.size()];
+                for (int j = 0; j < tokens.size(); j++) {
+                    Coordinate coordinate = tokens.get(j) instanceof String key
+                            ? getCoordinateFromString(key)
+                            : coordinateRegistry.register((Long) tokens.get(j));
+                    indices[i][j] = coordinate.index();
+                }
+            }
+            ChunkedDistanceReader.remap(chunks, indices);
+
+            for (ChunkedDistanceReader.Chunk chunk : chunks) {
+                for (ChunkedDistanceReader.Origin origin : chunk.origins()) {
+                    uniqueGridCoordinates.add(coordinateRegistry.get(origin.origin()));
+                    builder.addRow(origin.origin(), origin.destinations(), origin.durations(), origin.paths(),
+                            origin.length());
+                    origins++;
                 }
-                reader.endObject();
             }
-            reader.endObject();
         } catch (IOException e) {
             logger.error("load {}", e);
         }
+        TravelTimeMatrix travelTimeMatrix = builder.build(coordinateRegistry.getCoordinates());
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        double megabytes = new File(distancesFilePath).length() / (1024.0 * 1024.0);
         logger.info(
-                "Loaded {} distances.", distances.size());
+                "Loaded {} distances between {} coordinates.",
+                travelTimeMatrix.countRoutes() - travelTimeMatrix.getEstimatedRoutes(), travelTimeMatrix.size());
+        logger.info("Estimated {} missing travel times.", travelTimeMatrix.getEstimatedRoutes());
+        logger.info(String.format("Read %.1f MB in %.2f s: %.1f MB/s, %.0f origins/s.", megabytes, seconds,
+                megabytes / seconds, origins / seconds));
+        return travelTimeMatrix;
     }
 
 }
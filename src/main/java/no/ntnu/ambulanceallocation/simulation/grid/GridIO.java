@@ -1,23 +1,24 @@
 package no.ntnu.ambulanceallocation.simulation.grid;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.URISyntaxException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+
+import no.ntnu.ambulanceallocation.ChunkedCSVReader;
 
 public class GridIO {
 
     private static final List<Coordinate> gridCoordinates = new ArrayList<>();
+    private static final SpatialIndex spatialIndex;
 
     static {
         List<String> coordinatesFilesList = List.of("oslo.csv", "akershus.csv");
         for (String coordinatesFile : coordinatesFilesList) {
             loadCoordinatesFile(GridIO.class.getClassLoader().getResource(coordinatesFile));
         }
+        spatialIndex = new SpatialIndex(gridCoordinates);
     }
 
     private static void loadCoordinatesFile(URL coordinatesFilePath) {
@@ -25,25 +26,43 @@ public class GridIO {
             throw new IllegalArgumentException("Coordinates file not found!");
         }
 
-        try (Scanner scanner = new Scanner(new File(coordinatesFilePath.toURI()))) {
-            scanner.nextLine(); // Skip header row
-            String line = scanner.nextLine();
-
-            while (scanner.hasNextLine()) {
-                line = scanner.nextLine();
-                List<String> values = Arrays.asList(line.split(","));
-
-                Coordinate gridCoordinate = new Coordinate((int) Double.parseDouble(values.get(0)),
-                        (int) Double.parseDouble(values.get(1)), Long.parseLong(values.get(4)));
-                gridCoordinates.add(gridCoordinate);
+        try (InputStream inputStream = coordinatesFilePath.openStream()) {
+            // Skips the header row and, as always, the first data row
+            ChunkedCSVReader.Result<List<long[]>> result = ChunkedCSVReader.read(inputStream, 2,
+                    new CoordinateParser());
+            for (List<long[]> chunk : result.chunks()) {
+                for (long[] values : chunk) {
+                    gridCoordinates.add(new Coordinate((int) values[0], (int) values[1], values[2]));
+                }
             }
-        } catch (IOException | URISyntaxException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    // Reads x, y and id; coordinates are created on the loading thread, as their
+    // constructor looks up DistanceIO
+    private static final class CoordinateParser implements ChunkedCSVReader.RowParser<List<long[]>> {
+
+        @Override
+        public List<long[]> newChunk() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean parse(ChunkedCSVReader.Row row, List<long[]> chunk) {
+            chunk.add(new long[] { (int) row.parseDouble(0), (int) row.parseDouble(1), row.parseLong(4) });
+            return true;
+        }
+
+    }
+
     public static List<Coordinate> getGridCoordinates() {
         return gridCoordinates;
     }
 
+    public static SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
 }
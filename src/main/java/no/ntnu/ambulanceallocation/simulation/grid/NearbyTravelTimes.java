@@ -0,0 +1,61 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Travel times averaged over the grid cells around the origin, which smooths
+// out single cells with unusual routes. One row of averages to every
+// destination is computed per origin on first use and kept.
+public final class NearbyTravelTimes {
+
+    public static final int RADIUS = 1200;
+
+    private static final Map<Integer, int[]> rows = new ConcurrentHashMap<>();
+
+    private NearbyTravelTimes() {
+    }
+
+    public static int get(Coordinate origin, Coordinate destination) {
+        if (origin.index() != Coordinate.UNINDEXED && destination.index() != Coordinate.UNINDEXED) {
+            int travelTime = rows.computeIfAbsent(origin.index(), index -> computeRow(origin))[destination.index()];
+            if (travelTime != TravelTimeMatrix.NO_ROUTE) {
+                return travelTime;
+            }
+        }
+        return (int) Math.round(neighborsWithRouteTo(origin, destination).stream()
+                .mapToInt(c -> c.timeTo(destination)).average()
+                .orElse(origin.timeTo(destination)));
+    }
+
+    private static int[] computeRow(Coordinate origin) {
+        TravelTimeMatrix travelTimeMatrix = DistanceIO.travelTimeMatrix;
+        int[] neighbors = GridIO.getSpatialIndex().getNeighbors(origin, RADIUS).stream()
+                .mapToInt(DistanceIO::indexOf)
+                .filter(index -> index != Coordinate.UNINDEXED)
+                .toArray();
+        int[] row = new int[travelTimeMatrix.size()];
+        for (int destination = 0; destination < row.length; destination++) {
+            long sum = 0;
+            int count = 0;
+            for (int neighbor : neighbors) {
+                int travelTime = travelTimeMatrix.getTravelTime(neighbor, destination);
+                if (travelTime != TravelTimeMatrix.NO_ROUTE) {
+                    sum += travelTime;
+                    count++;
+                }
+            }
+            row[destination] = count > 0
+                    ? (int) Math.round((double) sum / count)
+                    : travelTimeMatrix.getTravelTime(origin.index(), destination);
+        }
+        return row;
+    }
+
+    private static List<Coordinate> neighborsWithRouteTo(Coordinate origin, Coordinate destination) {
+        return GridIO.getSpatialIndex().getNeighbors(origin, RADIUS).stream()
+                .filter(c -> c.routeExists(destination))
+                .toList();
+    }
+
+}
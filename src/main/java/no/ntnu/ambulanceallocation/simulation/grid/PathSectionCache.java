@@ -0,0 +1,65 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Reads per-origin path sections from the path block of od.bin on first
+// access and keeps the most recently used ones in memory
+final class PathSectionCache implements IntFunction<ByteBuffer> {
+
+    private final FileChannel channel;
+    private final long position;
+    private final LongBuffer sectionOffsets;
+    private final Map<Integer, ByteBuffer> sections;
+
+    PathSectionCache(FileChannel channel, long position, LongBuffer sectionOffsets, int capacity) {
+        this.channel = channel;
+        this.position = position;
+        this.sectionOffsets = sectionOffsets;
+        this.sections = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public synchronized ByteBuffer apply(int origin) {
+        ByteBuffer section = sections.get(origin);
+        if (section == null) {
+            section = read(origin);
+            if (section != null) {
+                sections.put(origin, section);
+            }
+        }
+        return section;
+    }
+
+    private ByteBuffer read(int origin) {
+        long start = sectionOffsets.get(origin);
+        int length = (int) (sectionOffsets.get(origin + 1) - start);
+        if (length == 0) {
+            return null;
+        }
+        ByteBuffer section = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (section.hasRemaining()) {
+                if (channel.read(section, position + start + section.position()) < 0) {
+                    throw new IOException("Unexpected end of file reading paths for origin " + origin);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return section.flip();
+    }
+
+}
@@ -0,0 +1,162 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compressed storage for all paths leaving one origin.
+ * <p>
+ * The paths are merged into a prefix tree, so a shared prefix is stored once.
+ * Every tree node is a record of two varints: the byte distance back to the
+ * parent record (0 for a root) and the cell index, zigzag delta encoded
+ * against the parent cell for non-root nodes. A section starts with one int
+ * per destination holding the offset of the record the path ends in, or -1 if
+ * there is no path. Paths are decoded by walking parent pointers from that
+ * record.
+ */
+final class PathTree {
+
+    private static final int NO_PATH = -1;
+    private static final Coordinate[] NO_CELLS = new Coordinate[0];
+
+    private PathTree() {
+    }
+
+    static ByteBuffer encode(int size, int[][] paths) {
+        int[] terminals = new int[size];
+        Arrays.fill(terminals, NO_PATH);
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        Map<Long, Integer> children = new HashMap<>();
+        Map<Integer, Integer> recordCells = new HashMap<>();
+
+        for (int destination = 0; destination < size; destination++) {
+            int[] path = paths[destination];
+            if (path == null || path.length == 0) {
+                continue;
+            }
+            int parent = NO_PATH;
+            for (int cell : path) {
+                long key = ((long) parent << 32) | (cell & 0xFFFFFFFFL);
+                Integer node = children.get(key);
+                if (node == null) {
+                    node = records.size();
+                    if (parent == NO_PATH) {
+                        writeVarInt(records, 0);
+                        writeVarInt(records, cell);
+                    } else {
+                        writeVarInt(records, node - parent);
+                        writeVarInt(records, zigzag(cell - recordCells.get(parent)));
+                    }
+                    children.put(key, node);
+                    recordCells.put(node, cell);
+                }
+                parent = node;
+            }
+            terminals[destination] = parent;
+        }
+
+        ByteBuffer section = ByteBuffer.allocate(size * Integer.BYTES + records.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int terminal : terminals) {
+            section.putInt(terminal);
+        }
+        section.put(records.toByteArray());
+        return section.flip();
+    }
+
+    static Coordinate[] decode(ByteBuffer section, int size, int destination, Coordinate[] coordinates) {
+        int length = decode(section, size, destination, coordinates, NO_CELLS);
+        if (length == NO_PATH) {
+            return null;
+        }
+        Coordinate[] path = new Coordinate[length];
+        decode(section, size, destination, coordinates, path);
+        return path;
+    }
+
+    // Decodes the path into the given array without allocating and returns its
+    // length, or -1 if there is no path. The array is left untouched if the
+    // path does not fit.
+    static int decode(ByteBuffer section, int size, int destination, Coordinate[] coordinates,
+            Coordinate[] path) {
+        int terminal = section.getInt(destination * Integer.BYTES);
+        if (terminal == NO_PATH) {
+            return NO_PATH;
+        }
+        int base = size * Integer.BYTES;
+
+        // The cell of the terminal is the cell of the root plus the deltas on
+        // the way up, so the cells are found walking up from the terminal twice
+        int depth = 0;
+        int cell = 0;
+        int record = terminal;
+        while (true) {
+            depth++;
+            int distance = readVarInt(section, base + record);
+            int value = readCell(section, base + record);
+            if (distance == 0) {
+                cell += value;
+                break;
+            }
+            cell += unzigzag(value);
+            record -= distance;
+        }
+        if (depth > path.length) {
+            return depth;
+        }
+
+        record = terminal;
+        for (int i = depth - 1; i >= 0; i--) {
+            path[i] = coordinates[cell];
+            int distance = readVarInt(section, base + record);
+            cell -= unzigzag(readCell(section, base + record));
+            record -= distance;
+        }
+        return depth;
+    }
+
+    private static int readCell(ByteBuffer section, int position) {
+        return readVarInt(section, position + varIntLength(section, position));
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer, int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int varIntLength(ByteBuffer buffer, int position) {
+        int length = 1;
+        while (buffer.get(position++) < 0) {
+            length++;
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,108 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Travel times quantized to 16 bits and kept off-heap, for grids whose full
+ * matrix does not fit on the heap.
+ * <p>
+ * The matrix is split into tiles of TILE_SIZE origins by TILE_SIZE
+ * destinations. A tile stores its smallest travel time as a base and every
+ * travel time as an unsigned number of steps of the tile's scale above it.
+ * Tiles whose travel times span less than 65534 seconds get a scale of one
+ * second and are exact; otherwise the error is at most half the scale. On top
+ * of this, all storage modes round od.json durations to whole seconds, adding
+ * at most 0.5 s. Each band of TILE_SIZE origins is a separate direct buffer, so
+ * no single allocation grows with the square of the grid: a 20k cell grid
+ * takes 800 MB.
+ */
+final class QuantizedTravelTimes implements TravelTimeStore {
+
+    static final int TILE_SIZE = 256;
+    private static final int TILE_SHIFT = 8;
+    private static final int MISSING = 0xFFFF;
+    private static final int MAX_STEPS = 0xFFFE;
+
+    private final int size;
+    private final int tilesPerBand;
+    private final ShortBuffer[] bands;
+    private final int[] bases;
+    private final int[] scales;
+
+    private QuantizedTravelTimes(int size) {
+        this.size = size;
+        int bandCount = (size + TILE_SIZE - 1) >>> TILE_SHIFT;
+        this.tilesPerBand = bandCount;
+        this.bands = new ShortBuffer[bandCount];
+        this.bases = new int[bandCount * tilesPerBand];
+        this.scales = new int[bandCount * tilesPerBand];
+    }
+
+    static QuantizedTravelTimes of(TravelTimeStore source, int size) {
+        QuantizedTravelTimes quantized = new QuantizedTravelTimes(size);
+        IntStream.range(0, quantized.bands.length).parallel().forEach(band -> quantized.fillBand(source, band));
+        return quantized;
+    }
+
+    @Override
+    public int get(int origin, int destination) {
+        int band = origin >>> TILE_SHIFT;
+        int steps = bands[band].get((origin & (TILE_SIZE - 1)) * size + destination) & 0xFFFF;
+        if (steps == MISSING) {
+            return TravelTimeMatrix.NO_ROUTE;
+        }
+        int tile = band * tilesPerBand + (destination >>> TILE_SHIFT);
+        return bases[tile] + steps * scales[tile];
+    }
+
+    // Largest difference in seconds from the travel times that were quantized
+    int getMaxError() {
+        int maxScale = 1;
+        for (int scale : scales) {
+            maxScale = Math.max(maxScale, scale);
+        }
+        return maxScale / 2;
+    }
+
+    private void fillBand(TravelTimeStore source, int band) {
+        int firstOrigin = band * TILE_SIZE;
+        int origins = Math.min(TILE_SIZE, size - firstOrigin);
+        ShortBuffer values = ByteBuffer.allocateDirect(origins * size * Short.BYTES).order(ByteOrder.nativeOrder())
+                .asShortBuffer();
+
+        for (int firstDestination = 0; firstDestination < size; firstDestination += TILE_SIZE) {
+            int lastDestination = Math.min(size, firstDestination + TILE_SIZE);
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int origin = firstOrigin; origin < firstOrigin + origins; origin++) {
+                for (int destination = firstDestination; destination < lastDestination; destination++) {
+                    int travelTime = source.get(origin, destination);
+                    if (travelTime != TravelTimeMatrix.NO_ROUTE) {
+                        min = Math.min(min, travelTime);
+                        max = Math.max(max, travelTime);
+                    }
+                }
+            }
+            int tile = band * tilesPerBand + (firstDestination >>> TILE_SHIFT);
+            int base = min == Integer.MAX_VALUE ? 0 : min;
+            int scale = max <= min ? 1 : Math.max(1, (int) Math.ceil((double) (max - min) / MAX_STEPS));
+            bases[tile] = base;
+            scales[tile] = scale;
+
+            for (int origin = firstOrigin; origin < firstOrigin + origins; origin++) {
+                for (int destination = firstDestination; destination < lastDestination; destination++) {
+                    int travelTime = source.get(origin, destination);
+                    int steps = travelTime == TravelTimeMatrix.NO_ROUTE
+                            ? MISSING
+                            : (int) Math.round((double) (travelTime - base) / scale);
+                    values.put((origin - firstOrigin) * size + destination, (short) steps);
+                }
+            }
+        }
+        bands[band] = values;
+    }
+
+}
@@ -0,0 +1,147 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Buckets coordinates on a 1 km lattice aligned with the UTM grid. A radius
+ * query only visits the buckets overlapping the circle, and a k-nearest query
+ * searches rings of buckets outwards from the center until no closer
+ * coordinate can remain.
+ */
+public final class SpatialIndex {
+
+    public static final int CELL_SIZE = 1_000;
+    // Covers the eight cells around a grid cell, with margin for the diagonals
+    public static final double NEIGHBOR_RADIUS = 1.5 * CELL_SIZE;
+
+    private final int minColumn;
+    private final int minRow;
+    private final int columns;
+    private final int rows;
+    // The coordinates of bucket b are entries[bucketStarts[b]] up to
+    // entries[bucketStarts[b + 1]]
+    private final int[] bucketStarts;
+    private final Coordinate[] entries;
+
+    public SpatialIndex(Collection<Coordinate> coordinates) {
+        int minColumn = Integer.MAX_VALUE, minRow = Integer.MAX_VALUE;
+        int maxColumn = Integer.MIN_VALUE, maxRow = Integer.MIN_VALUE;
+        for (Coordinate coordinate : coordinates) {
+            minColumn = Math.min(minColumn, columnOf(coordinate.x()));
+            minRow = Math.min(minRow, rowOf(coordinate.y()));
+            maxColumn = Math.max(maxColumn, columnOf(coordinate.x()));
+            maxRow = Math.max(maxRow, rowOf(coordinate.y()));
+        }
+        if (coordinates.isEmpty()) {
+            minColumn = minRow = 0;
+            maxColumn = maxRow = -1;
+        }
+        this.minColumn = minColumn;
+        this.minRow = minRow;
+        this.columns = maxColumn - minColumn + 1;
+        this.rows = maxRow - minRow + 1;
+
+        bucketStarts = new int[columns * rows + 1];
+        for (Coordinate coordinate : coordinates) {
+            bucketStarts[bucketOf(coordinate) + 1]++;
+        }
+        for (int bucket = 0; bucket < columns * rows; bucket++) {
+            bucketStarts[bucket + 1] += bucketStarts[bucket];
+        }
+        entries = new Coordinate[coordinates.size()];
+        int[] positions = bucketStarts.clone();
+        for (Coordinate coordinate : coordinates) {
+            entries[positions[bucketOf(coordinate)]++] = coordinate;
+        }
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public List<Coordinate> withinRadius(Coordinate center, double radius) {
+        List<Coordinate> result = new ArrayList<>();
+        int reach = (int) Math.ceil(radius / CELL_SIZE);
+        int centerColumn = columnOf(center.x()) - minColumn;
+        int centerRow = rowOf(center.y()) - minRow;
+        int lastColumn = Math.min(columns - 1, centerColumn + reach);
+        int lastRow = Math.min(rows - 1, centerRow + reach);
+        for (int column = Math.max(0, centerColumn - reach); column <= lastColumn; column++) {
+            for (int row = Math.max(0, centerRow - reach); row <= lastRow; row++) {
+                int bucket = column * rows + row;
+                for (int i = bucketStarts[bucket]; i < bucketStarts[bucket + 1]; i++) {
+                    if (entries[i].euclideanDistanceTo(center) <= radius) {
+                        result.add(entries[i]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // Other coordinates within radius of the center
+    public List<Coordinate> getNeighbors(Coordinate center, double radius) {
+        List<Coordinate> neighbors = withinRadius(center, radius);
+        neighbors.removeIf(center::equals);
+        return neighbors;
+    }
+
+    public List<Coordinate> getNeighbors(Coordinate center) {
+        return getNeighbors(center, NEIGHBOR_RADIUS);
+    }
+
+    // The k coordinates closest to the center, closest first
+    public List<Coordinate> nearest(Coordinate center, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        Comparator<Coordinate> byDistance = Comparator.comparingDouble(c -> c.euclideanDistanceTo(center));
+        List<Coordinate> candidates = new ArrayList<>();
+        int centerColumn = columnOf(center.x()) - minColumn;
+        int centerRow = rowOf(center.y()) - minRow;
+        int maxRing = Math.max(Math.max(centerColumn, columns - 1 - centerColumn),
+                Math.max(centerRow, rows - 1 - centerRow));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int column = centerColumn - ring; column <= centerColumn + ring; column++) {
+                boolean edgeColumn = column == centerColumn - ring || column == centerColumn + ring;
+                for (int row = centerRow - ring; row <= centerRow + ring; row += edgeColumn ? 1 : 2 * ring) {
+                    if (column >= 0 && column < columns && row >= 0 && row < rows) {
+                        int bucket = column * rows + row;
+                        for (int i = bucketStarts[bucket]; i < bucketStarts[bucket + 1]; i++) {
+                            candidates.add(entries[i]);
+                        }
+                    }
+                    if (ring == 0) {
+                        break;
+                    }
+                }
+            }
+            // Anything in later rings is at least ring cells away
+            if (candidates.size() >= k) {
+                candidates.sort(byDistance);
+                if (candidates.get(k - 1).euclideanDistanceTo(center) <= (double) ring * CELL_SIZE) {
+                    return List.copyOf(candidates.subList(0, k));
+                }
+            }
+        }
+        candidates.sort(byDistance);
+        return List.copyOf(candidates.subList(0, Math.min(k, candidates.size())));
+    }
+
+    private int bucketOf(Coordinate coordinate) {
+        return (columnOf(coordinate.x()) - minColumn) * rows + rowOf(coordinate.y()) - minRow;
+    }
+
+    private static int columnOf(int x) {
+        return Math.floorDiv(x, CELL_SIZE);
+    }
+
+    private static int rowOf(int y) {
+        return Math.floorDiv(y, CELL_SIZE);
+    }
+
+}
@@ -0,0 +1,101 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+// Estimates missing travel times from the known ones. Pairs are grouped into
+// bands of Euclidean distance, and within each band travel time is fitted as a
+// linear function of distance by least squares.
+final class TravelTimeEstimator {
+
+    private static final double[] BAND_LIMITS = { 1, 1_000, 2_000, 4_000, 8_000, 16_000, 32_000, 64_000,
+            Double.POSITIVE_INFINITY };
+
+    private final double[] intercepts = new double[BAND_LIMITS.length];
+    private final double[] slopes = new double[BAND_LIMITS.length];
+
+    private TravelTimeEstimator() {
+    }
+
+    // Replaces every NO_ROUTE entry of the row-major matrix with an estimate and
+    // returns the number of estimated pairs
+    static int fillMissing(int[] travelTimes, Coordinate[] coordinates) {
+        TravelTimeEstimator estimator = fit(travelTimes, coordinates);
+        int size = coordinates.length;
+        int estimated = 0;
+        for (int origin = 0; origin < size; origin++) {
+            for (int destination = 0; destination < size; destination++) {
+                int i = origin * size + destination;
+                if (travelTimes[i] == TravelTimeMatrix.NO_ROUTE) {
+                    travelTimes[i] = estimator.estimate(distance(coordinates[origin], coordinates[destination]));
+                    estimated++;
+                }
+            }
+        }
+        return estimated;
+    }
+
+    private static TravelTimeEstimator fit(int[] travelTimes, Coordinate[] coordinates) {
+        int bands = BAND_LIMITS.length;
+        long[] counts = new long[bands];
+        double[] sumDistance = new double[bands];
+        double[] sumTime = new double[bands];
+        double[] sumDistanceSquared = new double[bands];
+        double[] sumProduct = new double[bands];
+
+        int size = coordinates.length;
+        for (int origin = 0; origin < size; origin++) {
+            for (int destination = 0; destination < size; destination++) {
+                int travelTime = travelTimes[origin * size + destination];
+                if (travelTime != TravelTimeMatrix.NO_ROUTE) {
+                    double distance = distance(coordinates[origin], coordinates[destination]);
+                    int band = bandOf(distance);
+                    counts[band]++;
+                    sumDistance[band] += distance;
+                    sumTime[band] += travelTime;
+                    sumDistanceSquared[band] += distance * distance;
+                    sumProduct[band] += distance * travelTime;
+                }
+            }
+        }
+
+        TravelTimeEstimator estimator = new TravelTimeEstimator();
+        for (int band = 0; band < bands; band++) {
+            // Empty bands borrow the model of the closest band with data
+            int source = band;
+            for (int offset = 1; counts[source] == 0 && offset < bands; offset++) {
+                if (band - offset >= 0 && counts[band - offset] > 0) {
+                    source = band - offset;
+                } else if (band + offset < bands && counts[band + offset] > 0) {
+                    source = band + offset;
+                }
+            }
+            long n = counts[source];
+            if (n == 0) {
+                continue;
+            }
+            double denominator = n * sumDistanceSquared[source] - sumDistance[source] * sumDistance[source];
+            double slope = denominator > 1e-9
+                    ? (n * sumProduct[source] - sumDistance[source] * sumTime[source]) / denominator
+                    : 0;
+            estimator.slopes[band] = slope;
+            estimator.intercepts[band] = (sumTime[source] - slope * sumDistance[source]) / n;
+        }
+        return estimator;
+    }
+
+    private int estimate(double distance) {
+        int band = bandOf(distance);
+        return (int) Math.max(0, Math.round(intercepts[band] + slopes[band] * distance));
+    }
+
+    private static int bandOf(double distance) {
+        int band = 0;
+        while (distance >= BAND_LIMITS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    private static double distance(Coordinate from, Coordinate to) {
+        return from.euclideanDistanceTo(to);
+    }
+
+}
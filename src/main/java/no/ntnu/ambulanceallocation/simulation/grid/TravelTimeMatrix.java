@@ -0,0 +1,200 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntFunction;
+
+public final class TravelTimeMatrix {
+
+    public static final int NO_ROUTE = -1;
+
+    private final Coordinate[] coordinates;
+    private final BitSet origins;
+    private final int size;
+    // Either exact ints, heap backed or memory-mapped from a binary file, or
+    // quantized off-heap, see QuantizedTravelTimes
+    private final TravelTimeStore travelTimes;
+    // One compressed path tree per origin, see PathTree. Either held in memory
+    // or loaded on demand.
+    private final IntFunction<ByteBuffer> pathSections;
+    // Number of pairs missing from the OD data whose travel time is estimated
+    private final int estimatedRoutes;
+    // Least travel time to each destination, made on first use
+    private volatile int[] minimumTravelTimes;
+
+    TravelTimeMatrix(Coordinate[] coordinates, BitSet origins, TravelTimeStore travelTimes,
+            IntFunction<ByteBuffer> pathSections, int estimatedRoutes) {
+        this.coordinates = coordinates;
+        this.origins = origins;
+        this.size = coordinates.length;
+        this.travelTimes = travelTimes;
+        this.pathSections = pathSections;
+        this.estimatedRoutes = estimatedRoutes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Coordinate getCoordinate(int index) {
+        return coordinates[index];
+    }
+
+    public boolean isOrigin(int index) {
+        return origins.get(index);
+    }
+
+    public boolean hasRoute(int origin, int destination) {
+        return travelTimes.get(origin, destination) != NO_ROUTE;
+    }
+
+    public int getTravelTime(int origin, int destination) {
+        return travelTimes.get(origin, destination);
+    }
+
+    // The least travel time to the destination from any origin, or 0 if it has
+    // no route to it
+    public int getMinimumTravelTime(int destination) {
+        int[] minimum = minimumTravelTimes;
+        if (minimum == null) {
+            minimum = new int[size];
+            for (int to = 0; to < size; to++) {
+                int least = Integer.MAX_VALUE;
+                for (int from = 0; from < size; from++) {
+                    int travelTime = travelTimes.get(from, to);
+                    if (travelTime != NO_ROUTE && travelTime < least) {
+                        least = travelTime;
+                    }
+                }
+                minimum[to] = least == Integer.MAX_VALUE ? 0 : least;
+            }
+            minimumTravelTimes = minimum;
+        }
+        return minimum[destination];
+    }
+
+    public Coordinate[] getPath(int origin, int destination) {
+        ByteBuffer pathSection = pathSections.apply(origin);
+        if (pathSection == null) {
+            return null;
+        }
+        return PathTree.decode(pathSection, size, destination, coordinates);
+    }
+
+    // Decodes the path into the array if it fits and returns its length, or -1
+    // if there is no path, see PathTree
+    public int getPath(int origin, int destination, Coordinate[] path) {
+        ByteBuffer pathSection = pathSections.apply(origin);
+        if (pathSection == null) {
+            return -1;
+        }
+        return PathTree.decode(pathSection, size, destination, coordinates, path);
+    }
+
+    public int getEstimatedRoutes() {
+        return estimatedRoutes;
+    }
+
+    public long countRoutes() {
+        long routes = 0;
+        for (int origin = 0; origin < size; origin++) {
+            for (int destination = 0; destination < size; destination++) {
+                if (travelTimes.get(origin, destination) != NO_ROUTE) {
+                    routes++;
+                }
+            }
+        }
+        return routes;
+    }
+
+    // The same matrix with travel times quantized to 16 bits off-heap. Paths are
+    // shared with this matrix.
+    public TravelTimeMatrix quantized() {
+        return new TravelTimeMatrix(coordinates, origins, QuantizedTravelTimes.of(travelTimes, size), pathSections,
+                estimatedRoutes);
+    }
+
+    public boolean isQuantized() {
+        return travelTimes instanceof QuantizedTravelTimes;
+    }
+
+    public int getMaxQuantizationError() {
+        return travelTimes instanceof QuantizedTravelTimes quantized ? quantized.getMaxError() : 0;
+    }
+
+    ByteBuffer getPathSection(int origin) {
+        ByteBuffer pathSection = pathSections.apply(origin);
+        return pathSection == null ? null : pathSection.duplicate();
+    }
+
+    public static final class Builder {
+
+        private final List<Row> rows = new ArrayList<>();
+
+        private record Row(int origin, int[] destinations, int[] travelTimes, int[][] paths) {
+        }
+
+        public void addRow(int origin, int[] destinations, double[] durations, Coordinate[][] paths, int length) {
+            int[][] pathIndices = new int[length][];
+            for (int i = 0; i < length; i++) {
+                if (paths[i] != null) {
+                    pathIndices[i] = Arrays.stream(paths[i]).mapToInt(Coordinate::index).toArray();
+                }
+            }
+            addRow(origin, destinations, durations, pathIndices, length);
+        }
+
+        // Paths are given as coordinate indices
+        public void addRow(int origin, int[] destinations, double[] durations, int[][] paths, int length) {
+            int[] travelTimes = new int[length];
+            for (int i = 0; i < length; i++) {
+                travelTimes[i] = (int) Math.round(durations[i]);
+            }
+            rows.add(new Row(origin, Arrays.copyOf(destinations, length), travelTimes, Arrays.copyOf(paths, length)));
+        }
+
+        public TravelTimeMatrix build(List<Coordinate> coordinates) {
+            int size = coordinates.size();
+            if ((long) size * size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many coordinates for a dense travel time matrix: " + size);
+            }
+            int[] travelTimes = new int[size * size];
+            ByteBuffer[] pathSections = new ByteBuffer[size];
+            BitSet origins = new BitSet(size);
+            Arrays.fill(travelTimes, NO_ROUTE);
+
+            for (Row row : rows) {
+                int offset = row.origin() * size;
+                for (int i = 0; i < row.destinations().length; i++) {
+                    travelTimes[offset + row.destinations()[i]] = row.travelTimes()[i];
+                }
+                origins.set(row.origin());
+            }
+            // Rows have distinct origins, so the sections can be encoded concurrently
+            rows.parallelStream().forEach(row -> pathSections[row.origin()] = buildPathSection(size, row));
+            rows.clear();
+            Coordinate[] coordinateArray = coordinates.toArray(new Coordinate[size]);
+            int estimatedRoutes = TravelTimeEstimator.fillMissing(travelTimes, coordinateArray);
+            return new TravelTimeMatrix(coordinateArray, origins, TravelTimeStore.of(IntBuffer.wrap(travelTimes), size),
+                    origin -> pathSections[origin], estimatedRoutes);
+        }
+
+        private static ByteBuffer buildPathSection(int size, Row row) {
+            int[][] paths = new int[size][];
+            boolean hasPaths = false;
+            for (int i = 0; i < row.destinations().length; i++) {
+                int[] path = row.paths()[i];
+                if (path != null && path.length > 0) {
+                    paths[row.destinations()[i]] = path;
+                    hasPaths = true;
+                }
+            }
+            return hasPaths ? PathTree.encode(size, paths) : null;
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.nio.IntBuffer;
+
+// Travel times in whole seconds, or TravelTimeMatrix.NO_ROUTE
+interface TravelTimeStore {
+
+    int get(int origin, int destination);
+
+    // Row-major ints indexed by origin * size + destination, either heap backed
+    // or memory-mapped
+    static TravelTimeStore of(IntBuffer travelTimes, int size) {
+        return (origin, destination) -> travelTimes.get(origin * size + destination);
+    }
+
+}
@@ -0,0 +1,188 @@
+package no.ntnu.ambulanceallocation.simulation.incident;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshot of the validated incidents in incidents.csv, written on the first
+ * load and memory-mapped by later JVMs instead of parsing the CSV again. The
+ * snapshot records the size and modification time of the CSV it was made
+ * from, and is ignored once either changes. The partitions of an
+ * {@link IncidentArchive} use the same format.
+ * <p>
+ * Layout, all values little-endian:
+ * <ul>
+ * <li>header: magic, version (ints), CSV size, CSV modification time in
+ * milliseconds (longs), incident count (int)</li>
+ * <li>one block per IncidentStore column, in declaration order, with the
+ * urgency level ordinal (-1 for none) and the vehicle counts as bytes</li>
+ * </ul>
+ */
+public final class BinaryIncidentIO {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryIncidentIO.class);
+
+    public static final String binaryIncidentsFilePath = new File("src/main/resources/incidents.bin")
+            .getAbsolutePath();
+
+    private static final int MAGIC = 0x494E4353; // "INCS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int ROW_SIZE = Long.BYTES + 7 * Integer.BYTES + 3 * Byte.BYTES;
+
+    private BinaryIncidentIO() {
+    }
+
+    public static boolean isUpToDate(Path binaryFile, Path csvFile) {
+        if (!Files.exists(binaryFile) || !Files.exists(csvFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            return header.remaining() == HEADER_SIZE
+                    && header.getInt() == MAGIC
+                    && header.getInt() == VERSION
+                    && header.getLong() == Files.size(csvFile)
+                    && header.getLong() == Files.getLastModifiedTime(csvFile).toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void write(IncidentStore incidents, Path file, Path csvFile) throws IOException {
+        write(incidents, 0, incidents.size(), file, Files.size(csvFile),
+                Files.getLastModifiedTime(csvFile).toMillis());
+    }
+
+    // Writes the incidents from index from up to to, recording the given source
+    // size and modification time
+    static void write(IncidentStore incidents, int from, int to, Path file, long sourceSize,
+            long sourceModified) throws IOException {
+        int size = to - from;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size * ROW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putLong(sourceSize).putLong(sourceModified);
+        buffer.putInt(size);
+
+        for (int i = from; i < to; i++) {
+            buffer.putLong(incidents.getCallReceived(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(incidents.getXCoordinate(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(incidents.getYCoordinate(i));
+        }
+        for (int i = from; i < to; i++) {
+            UrgencyLevel urgencyLevel = incidents.getUrgencyLevel(i);
+            buffer.put(urgencyLevel == null ? -1 : (byte) urgencyLevel.ordinal());
+        }
+        for (int i = from; i < to; i++) {
+            buffer.put((byte) incidents.getNonTransportingVehicles(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.put((byte) incidents.getTransportingVehicles(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(incidents.getDispatched(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(incidents.getArrivalAtScene(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(incidents.getDepartureFromScene(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(incidents.getAvailableNonTransport(i));
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(incidents.getAvailableTransport(i));
+        }
+        buffer.flip();
+
+        // Concurrent JVMs may write the snapshot at the same time, so each writes
+        // its own temporary file
+        Path temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static IncidentStore map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not an incident snapshot of version " + VERSION);
+            }
+            buffer.position(HEADER_SIZE - Integer.BYTES);
+            int size = buffer.getInt();
+            if (channel.size() != HEADER_SIZE + (long) size * ROW_SIZE) {
+                throw new IOException(file + " is truncated");
+            }
+
+            long[] callReceived = new long[size];
+            buffer.asLongBuffer().get(callReceived);
+            buffer.position(buffer.position() + size * Long.BYTES);
+            int[] xCoordinates = readInts(buffer, size);
+            int[] yCoordinates = readInts(buffer, size);
+            byte[] urgencyLevels = readBytes(buffer, size);
+            byte[] nonTransportingVehicles = readBytes(buffer, size);
+            byte[] transportingVehicles = readBytes(buffer, size);
+            int[] dispatched = readInts(buffer, size);
+            int[] arrivalAtScene = readInts(buffer, size);
+            int[] departureFromScene = readInts(buffer, size);
+            int[] availableNonTransport = readInts(buffer, size);
+            int[] availableTransport = readInts(buffer, size);
+
+            return new IncidentStore(size, callReceived, xCoordinates, yCoordinates, urgencyLevels,
+                    nonTransportingVehicles, transportingVehicles, dispatched, arrivalAtScene, departureFromScene,
+                    availableNonTransport, availableTransport);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int size) {
+        int[] values = new int[size];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        return values;
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int size) {
+        byte[] values = new byte[size];
+        buffer.get(values);
+        return values;
+    }
+
+    // Rebuilds the snapshot from incidents.csv, whether or not it is up to date
+    public static void main(String[] args) throws IOException {
+        Path csvFile = Path.of(IncidentIO.incidentsFilePath);
+        Path binaryFile = Path.of(binaryIncidentsFilePath);
+        if (!Files.exists(csvFile)) {
+            logger.error("Cannot find {}", csvFile);
+            return;
+        }
+        logger.info("Compiling {} into {} ...", csvFile, binaryFile);
+        write(IncidentIO.loadIncidentsFromFile(), binaryFile, csvFile);
+        logger.info("Wrote {} KB.", Files.size(binaryFile) / 1024);
+    }
+
+}
@@ -1,79 +1,131 @@
 package no.ntnu.ambulanceallocation.simulation.incident;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
 import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
 
-public record Incident(
-        LocalDateTime callReceived,
+// A view of one incident in an IncidentStore
+public record Incident(IncidentStore store, int index) {
 
-        int xCoordinate,
-        int yCoordinate,
+    public LocalDateTime callReceived() {
+        return IncidentStore.toDateTime(store.getCallReceived(index));
+    }
+
+    public long getCallReceivedEpochSecond() {
+        return store.getCallReceived(index);
+    }
+
+    public int xCoordinate() {
+        return store.getXCoordinate(index);
+    }
+
+    public int yCoordinate() {
+        return store.getYCoordinate(index);
+    }
+
+    public UrgencyLevel urgencyLevel() {
+        return store.getUrgencyLevel(index);
+    }
+
+    public LocalDateTime dispatched() {
+        return secondsAfterCall(store.getDispatched(index));
+    }
+
+    public Optional<LocalDateTime> arrivalAtScene() {
+        return hasArrivalAtScene() ? Optional.of(secondsAfterCall(store.getArrivalAtScene(index))) : Optional.empty();
+    }
+
+    public Optional<LocalDateTime> departureFromScene() {
+        return hasDepartureFromScene() ? Optional.of(secondsAfterCall(store.getDepartureFromScene(index)))
+                : Optional.empty();
+    }
+
+    public LocalDateTime availableNonTransport() {
+        return secondsAfterCall(store.getAvailableNonTransport(index));
+    }
+
+    public LocalDateTime availableTransport() {
+        return secondsAfterCall(store.getAvailableTransport(index));
+    }
+
+    public int nonTransportingVehicles() {
+        return store.getNonTransportingVehicles(index);
+    }
 
-        UrgencyLevel urgencyLevel,
+    public int transportingVehicles() {
+        return store.getTransportingVehicles(index);
+    }
 
-        LocalDateTime dispatched,
-        Optional<LocalDateTime> arrivalAtScene,
-        Optional<LocalDateTime> departureFromScene,
-        LocalDateTime availableNonTransport,
-        LocalDateTime availableTransport,
+    public boolean hasArrivalAtScene() {
+        return store.getArrivalAtScene(index) != IncidentStore.MISSING;
+    }
 
-        int nonTransportingVehicles,
-        int transportingVehicles) {
+    public boolean hasDepartureFromScene() {
+        return store.getDepartureFromScene(index) != IncidentStore.MISSING;
+    }
 
     public Coordinate getLocation() {
-        return new Coordinate(xCoordinate, yCoordinate);
+        return store.getLocation(index);
     }
 
     public int getDispatchDelay() {
-        return (int) ChronoUnit.SECONDS.between(callReceived, dispatched);
+        return store.getDispatched(index);
     }
 
     public int getTravelTime() {
-        if (arrivalAtScene.isEmpty()) {
+        if (!hasArrivalAtScene()) {
             throw new IllegalStateException("Cannot compute travel time for incident without arrival time");
         }
-        return (int) ChronoUnit.SECONDS.between(dispatched, arrivalAtScene.get());
+        return store.getArrivalAtScene(index) - store.getDispatched(index);
     }
 
     public int getTimeSpentAtScene() {
-        if (arrivalAtScene.isEmpty() && departureFromScene.isEmpty()) {
+        if (!hasArrivalAtScene() || !hasDepartureFromScene()) {
             throw new IllegalStateException("Cannot compute time spent at scene without arrival and departure time");
         }
-        return (int) ChronoUnit.SECONDS.between(arrivalAtScene.get(), departureFromScene.get());
+        return store.getDepartureFromScene(index) - store.getArrivalAtScene(index);
     }
 
     public int getDuration() {
-        if (arrivalAtScene.isEmpty() && departureFromScene.isEmpty()) {
+        if (!hasDepartureFromScene()) {
             throw new IllegalStateException("Cannot compute duration without departure time");
         }
-        return (int) ChronoUnit.SECONDS.between(callReceived, departureFromScene.get());
+        return store.getDepartureFromScene(index);
     }
 
     public int getTotalIntervalTransport() {
-        return (int) ChronoUnit.SECONDS.between(callReceived, availableTransport);
+        return store.getAvailableTransport(index);
     }
 
     public int getTotalIntervalNonTransport() {
-        return (int) ChronoUnit.SECONDS.between(callReceived, availableNonTransport);
+        return store.getAvailableNonTransport(index);
     }
 
     public int getTimeFromDepartureToAvailableTransport() {
-        if (departureFromScene.isEmpty()) {
+        if (!hasDepartureFromScene()) {
             throw new IllegalStateException(
                     "Cannot compute duration without departure time");
         }
-        return (int) ChronoUnit.SECONDS.between(departureFromScene.get(), availableTransport);
+        return store.getAvailableTransport(index) - store.getDepartureFromScene(index);
     }
 
     public int getTimeFromDepartureToAvailableNonTransport() {
-        if (departureFromScene.isEmpty()) {
+        if (!hasDepartureFromScene()) {
             throw new IllegalStateException(
                     "Cannot compute duration without departure time");
         }
-        return (int) ChronoUnit.SECONDS.between(departureFromScene.get(), availableNonTransport);
+        return store.getAvailableNonTransport(index) - store.getDepartureFromScene(index);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Incident[callReceived=%s, xCoordinate=%s, yCoordinate=%s, urgencyLevel=%s]",
+                callReceived(), xCoordinate(), yCoordinate(), urgencyLevel());
+    }
+
+    private LocalDateTime secondsAfterCall(int seconds) {
+        return IncidentStore.toDateTime(store.getCallReceived(index) + seconds);
     }
 
 }
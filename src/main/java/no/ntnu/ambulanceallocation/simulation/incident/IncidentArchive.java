@@ -0,0 +1,180 @@
+package no.ntnu.ambulanceallocation.simulation.incident;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import no.ntnu.ambulanceallocation.Parameters;
+
+/**
+ * Incidents on disk in one binary file per month of calls, see
+ * {@link BinaryIncidentIO}. A time window only reads the months it overlaps,
+ * so memory grows with the window rather than with the archive, and years of
+ * history can be simulated one window at a time.
+ * <p>
+ * The manifest, manifest.csv, lists every partition with its month, file,
+ * number of incidents and the first and last call received in epoch seconds.
+ * Each partition records the size and modification time of the csv file it was
+ * written from, like incidents.bin, so the default archive is written again
+ * once incidents.csv changes.
+ */
+public final class IncidentArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncidentArchive.class);
+
+    public static final String archiveDirectoryPath = new File("src/main/resources/incidents").getAbsolutePath();
+
+    private static final String MANIFEST = "manifest.csv";
+    private static final String MANIFEST_HEADER = "month,file,incidents,first_call_received,last_call_received";
+
+    private record Partition(YearMonth month, Path file, int incidents, long firstCallReceived,
+            long lastCallReceived) {
+    }
+
+    private final List<Partition> partitions;
+
+    private IncidentArchive(List<Partition> partitions) {
+        this.partitions = partitions;
+    }
+
+    // The archive in archiveDirectoryPath, written from incidents.csv if it does
+    // not exist yet or is not up to date with it
+    public static IncidentArchive getDefault() {
+        return DefaultArchive.archive;
+    }
+
+    private static final class DefaultArchive {
+
+        private static final IncidentArchive archive;
+
+        static {
+            Path directory = Path.of(archiveDirectoryPath);
+            Path csvFile = Path.of(IncidentIO.incidentsFilePath);
+            try {
+                // Without incidents.csv the archive is used as it is
+                if (!Files.exists(directory.resolve(MANIFEST)) || (Files.exists(csvFile)
+                        && (Parameters.REBUILD_INCIDENT_CACHE || !isUpToDate(directory, csvFile)))) {
+                    logger.info("Writing incident archive to {} ...", directory);
+                    write(IncidentIO.incidents, directory, csvFile);
+                }
+                archive = open(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+    public static IncidentArchive open(Path directory) throws IOException {
+        List<String> lines = Files.readAllLines(directory.resolve(MANIFEST));
+        if (lines.isEmpty() || !lines.get(0).equals(MANIFEST_HEADER)) {
+            throw new IOException(directory.resolve(MANIFEST) + " is not an incident archive manifest");
+        }
+        List<Partition> partitions = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] values = line.split(",");
+            partitions.add(new Partition(YearMonth.parse(values[0]), directory.resolve(values[1]),
+                    Integer.parseInt(values[2]), Long.parseLong(values[3]), Long.parseLong(values[4])));
+        }
+        return new IncidentArchive(List.copyOf(partitions));
+    }
+
+    // Whether the archive was written from the csv file as it is now
+    public static boolean isUpToDate(Path directory, Path csvFile) {
+        if (!Files.exists(directory.resolve(MANIFEST))) {
+            return false;
+        }
+        try {
+            List<Partition> partitions = open(directory).partitions;
+            return !partitions.isEmpty() && partitions.stream()
+                    .allMatch(partition -> BinaryIncidentIO.isUpToDate(partition.file(), csvFile));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Writes the incidents read from the csv file, so the archive is up to date
+    // until the file changes
+    public static void write(IncidentStore incidents, Path directory, Path csvFile) throws IOException {
+        long sourceSize = Files.size(csvFile);
+        long sourceModified = Files.getLastModifiedTime(csvFile).toMillis();
+        Files.createDirectories(directory);
+        List<String> manifest = new ArrayList<>();
+        manifest.add(MANIFEST_HEADER);
+
+        int from = 0;
+        while (from < incidents.size()) {
+            YearMonth month = YearMonth.from(IncidentStore.toDateTime(incidents.getCallReceived(from)));
+            LocalDateTime nextMonth = month.plusMonths(1).atDay(1).atStartOfDay();
+            int to = incidents.firstAtOrAfter(IncidentStore.toEpochSecond(nextMonth));
+            String fileName = month + ".bin";
+            BinaryIncidentIO.write(incidents, from, to, directory.resolve(fileName), sourceSize, sourceModified);
+            manifest.add(String.join(",", month.toString(), fileName, Integer.toString(to - from),
+                    Long.toString(incidents.getCallReceived(from)),
+                    Long.toString(incidents.getCallReceived(to - 1))));
+            from = to;
+        }
+
+        // Partitions are in place before the manifest points to them
+        Path temporaryFile = Files.createTempFile(directory, MANIFEST, ".tmp");
+        Files.write(temporaryFile, manifest);
+        Files.move(temporaryFile, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int size() {
+        return partitions.stream().mapToInt(Partition::incidents).sum();
+    }
+
+    public List<YearMonth> getMonths() {
+        return partitions.stream().map(Partition::month).toList();
+    }
+
+    // The incidents of every partition with calls strictly between the given
+    // times, which may include incidents outside them
+    public IncidentStore load(LocalDateTime after, LocalDateTime before) throws IOException {
+        long afterEpochSecond = IncidentStore.toEpochSecond(after);
+        long beforeEpochSecond = IncidentStore.toEpochSecond(before);
+        List<IncidentStore> stores = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.lastCallReceived() > afterEpochSecond
+                    && partition.firstCallReceived() < beforeEpochSecond) {
+                stores.add(BinaryIncidentIO.map(partition.file()));
+            }
+        }
+        return stores.size() == 1 ? stores.get(0) : IncidentStore.concat(stores);
+    }
+
+    // The incidents received strictly between the given times, as a view of the
+    // partitions they were read from
+    public List<Incident> between(LocalDateTime after, LocalDateTime before) {
+        try {
+            return load(after, before).between(after, before);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Rebuilds the archive from incidents.csv
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(archiveDirectoryPath);
+        logger.info("Writing incident archive to {} ...", directory);
+        write(IncidentIO.incidents, directory, Path.of(IncidentIO.incidentsFilePath));
+        IncidentArchive archive = open(directory);
+        logger.info("Wrote {} incidents in {} monthly partitions.", archive.size(), archive.getMonths().size());
+    }
+
+}
@@ -0,0 +1,155 @@
+package no.ntnu.ambulanceallocation.simulation.incident;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic incidents fitted to historical ones, so that an allocation can be
+ * evaluated on many independent realisations of demand.
+ * <p>
+ * Calls arrive as a Poisson process whose rate is constant within each hour
+ * of the week, estimated as the number of historical calls in that hour of
+ * the week divided by how often it occurs in the history. Every call copies
+ * the location, urgency, vehicle demand and time intervals of a historical
+ * incident drawn uniformly from those received in the same hour of the day.
+ * The rate of a grid cell is thereby the weekly rate times the share of that
+ * hour's calls in the cell, and service times follow their empirical joint
+ * distribution.
+ * <p>
+ * Incidents are generated a day at a time as the stream is consumed, and the
+ * incidents of a replication depend only on the seed and the replication.
+ */
+public final class IncidentGenerator {
+
+    private static final int HOURS_PER_WEEK = 7 * 24;
+    private static final int SECONDS_PER_HOUR = 3_600;
+
+    private final IncidentStore history;
+    private final long seed;
+    // Expected calls per hour, by hour of the week starting on Monday
+    private final double[] hourlyRates = new double[HOURS_PER_WEEK];
+    // Historical incidents received in each hour of the day
+    private final int[][] incidentsByHour = new int[24][];
+
+    private IncidentGenerator(IncidentStore history, long seed) {
+        this.history = history;
+        this.seed = seed;
+    }
+
+    public static IncidentGenerator fit(IncidentStore history, long seed) {
+        if (history.size() == 0) {
+            throw new IllegalArgumentException("Cannot fit an incident generator without incidents");
+        }
+        IncidentGenerator generator = new IncidentGenerator(history, seed);
+
+        int[] calls = new int[HOURS_PER_WEEK];
+        int[] callsByHour = new int[24];
+        for (int incident = 0; incident < history.size(); incident++) {
+            long hour = Math.floorDiv(history.getCallReceived(incident), SECONDS_PER_HOUR);
+            calls[hourOfWeek(hour)]++;
+            callsByHour[Math.floorMod(hour, 24)]++;
+        }
+
+        // Hours of the week are counted as observed from the first to the last call
+        int[] occurrences = new int[HOURS_PER_WEEK];
+        long firstHour = Math.floorDiv(history.getCallReceived(0), SECONDS_PER_HOUR);
+        long lastHour = Math.floorDiv(history.getCallReceived(history.size() - 1), SECONDS_PER_HOUR);
+        for (long hour = firstHour; hour <= lastHour; hour++) {
+            occurrences[hourOfWeek(hour)]++;
+        }
+        for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+            generator.hourlyRates[hour] = occurrences[hour] == 0 ? 0 : (double) calls[hour] / occurrences[hour];
+        }
+
+        for (int hour = 0; hour < 24; hour++) {
+            generator.incidentsByHour[hour] = new int[callsByHour[hour]];
+        }
+        int[] counts = new int[24];
+        for (int incident = 0; incident < history.size(); incident++) {
+            int hour = Math.floorMod(Math.floorDiv(history.getCallReceived(incident), SECONDS_PER_HOUR), 24);
+            generator.incidentsByHour[hour][counts[hour]++] = incident;
+        }
+        return generator;
+    }
+
+    // Expected number of calls in the given hour of the week, 0 being Monday 00-01
+    public double getHourlyRate(int hourOfWeek) {
+        return hourlyRates[hourOfWeek];
+    }
+
+    // Incidents received from the start, inclusive, to the end, exclusive, in
+    // order of the time the call was received
+    public Stream<Incident> generate(LocalDateTime start, LocalDateTime end, int replication) {
+        // Mixing the seed again decorrelates the streams of neighbouring replications
+        SplittableRandom random = new SplittableRandom(new SplittableRandom(seed + replication).nextLong());
+        long startSecond = IncidentStore.toEpochSecond(start);
+        long endSecond = IncidentStore.toEpochSecond(end);
+        LocalDateTime firstDay = start.truncatedTo(ChronoUnit.DAYS);
+
+        return Stream.iterate(firstDay, day -> day.isBefore(end), day -> day.plusDays(1))
+                .map(day -> generateDay(IncidentStore.toEpochSecond(day), startSecond, endSecond, random))
+                .flatMap(day -> IntStream.range(0, day.size()).mapToObj(day::get));
+    }
+
+    private IncidentStore generateDay(long daySecond, long startSecond, long endSecond, SplittableRandom random) {
+        IncidentStore.Builder incidents = new IncidentStore.Builder();
+        for (int hour = 0; hour < 24; hour++) {
+            long hourSecond = daySecond + (long) hour * SECONDS_PER_HOUR;
+            double rate = hourlyRates[hourOfWeek(Math.floorDiv(hourSecond, SECONDS_PER_HOUR))];
+            if (rate == 0) {
+                continue;
+            }
+            // Exponential inter-arrival times, restarting at every hour as the
+            // process is memoryless
+            double time = hourSecond;
+            while (true) {
+                time += -Math.log(1 - random.nextDouble()) * SECONDS_PER_HOUR / rate;
+                if (time >= hourSecond + SECONDS_PER_HOUR) {
+                    break;
+                }
+                long callReceived = (long) time;
+                if (callReceived >= startSecond && callReceived < endSecond) {
+                    addCopy(incidents, callReceived, sample(hour, random));
+                }
+            }
+        }
+        return incidents.build();
+    }
+
+    private int sample(int hour, SplittableRandom random) {
+        int[] candidates = incidentsByHour[hour];
+        if (candidates.length == 0) {
+            return random.nextInt(history.size());
+        }
+        return candidates[random.nextInt(candidates.length)];
+    }
+
+    private void addCopy(IncidentStore.Builder incidents, long callReceived, int source) {
+        int arrivalAtScene = history.getArrivalAtScene(source);
+        int departureFromScene = history.getDepartureFromScene(source);
+        incidents.add(
+                callReceived,
+                history.getXCoordinate(source),
+                history.getYCoordinate(source),
+                history.getUrgencyLevel(source),
+                callReceived + history.getDispatched(source),
+                arrivalAtScene == IncidentStore.MISSING ? IncidentStore.MISSING : callReceived + arrivalAtScene,
+                departureFromScene == IncidentStore.MISSING ? IncidentStore.MISSING
+                        : callReceived + departureFromScene,
+                callReceived + history.getAvailableNonTransport(source),
+                callReceived + history.getAvailableTransport(source),
+                history.getNonTransportingVehicles(source),
+                history.getTransportingVehicles(source));
+    }
+
+    // Hour of the week starting on Monday, from hours since the epoch, which
+    // started on a Thursday
+    private static int hourOfWeek(long hour) {
+        long day = Math.floorDiv(hour, 24);
+        return Math.floorMod(day + 3, 7) * 24 + Math.floorMod(hour, 24);
+    }
+
+}
@@ -1,19 +1,16 @@
 package no.ntnu.ambulanceallocation.simulation.incident;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import no.ntnu.ambulanceallocation.ChunkedCSVReader;
+import no.ntnu.ambulanceallocation.ChunkedCSVReader.Row;
+import no.ntnu.ambulanceallocation.Parameters;
 import no.ntnu.ambulanceallocation.utils.Utils;
 
 public class IncidentIO {
@@ -23,72 +20,53 @@ public class IncidentIO {
     public static final String incidentsFilePath = new File("src/main/resources/incidents.csv").getAbsolutePath();
     public static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    public static final List<Incident> incidents;
+    public static final IncidentStore incidents;
 
     static {
-        incidents = loadIncidentsFromFile();
+        incidents = loadIncidents();
     }
 
-    public static List<Incident> loadIncidentsFromFile() {
+    private static IncidentStore loadIncidents() {
+        Path csvFile = Path.of(incidentsFilePath);
+        Path binaryFile = Path.of(BinaryIncidentIO.binaryIncidentsFilePath);
+        if (!Parameters.REBUILD_INCIDENT_CACHE && BinaryIncidentIO.isUpToDate(binaryFile, csvFile)) {
+            try {
+                long startTime = System.nanoTime();
+                IncidentStore incidents = BinaryIncidentIO.map(binaryFile);
+                logger.info("Mapped {} incidents from {} in {} ms.", incidents.size(), binaryFile,
+                        (System.nanoTime() - startTime) / 1_000_000);
+                return incidents;
+            } catch (IOException e) {
+                logger.error("Failed to map binary incidents, falling back to csv {}", e);
+            }
+        }
+        IncidentStore incidents = loadIncidentsFromFile();
+        try {
+            BinaryIncidentIO.write(incidents, binaryFile, csvFile);
+        } catch (IOException e) {
+            logger.warn("Could not write {}: {}", binaryFile, e);
+        }
+        return incidents;
+    }
 
-        List<Incident> incidents = new ArrayList<>();
+    public static IncidentStore loadIncidentsFromFile() {
+
+        IncidentStore.Builder incidents = new IncidentStore.Builder();
 
         logger.info("Loading incidents from file...");
 
         int processedLines = 0;
         int skippedLines = 0;
 
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(incidentsFilePath))) {
-            String header = bufferedReader.readLine();
-
-            logger.info("Incident CSV header: {}", header); // tidspunkt,xcoor,ycoor,hastegrad,tiltak_type,rykker_ut,ank_hentested,avg_hentested,ledig,total_vehicles_assigned,transporting_vehicles,cancelled_vehicles
-
-            String line = bufferedReader.readLine();
-
-            while (line != null) {
-                List<String> values = Arrays.asList(line.split(","));
-
-                LocalDateTime callReceived = LocalDateTime.parse(values.get(0), dateTimeFormatter);
-
-                if (isValid(values)) {
-
-                    int xCoordinate = Integer.parseInt(values.get(1));
-                    int yCoordinate = Integer.parseInt(values.get(2));
-
-                    String urgencyLevel = values.get(3);
-                    // String dispatchType = values.get(4); // Always ambulance
-
-                    LocalDateTime dispatched = LocalDateTime.parse(values.get(5), dateTimeFormatter);
-                    Optional<LocalDateTime> arrivalAtScene = parseDateTime(values.get(6));
-                    Optional<LocalDateTime> departureFromScene = parseDateTime(values.get(7));
-                    LocalDateTime availableNonTransport = LocalDateTime.parse(values.get(8), dateTimeFormatter);
-                    LocalDateTime availableTransport = LocalDateTime.parse(values.get(9), dateTimeFormatter);
-
-                    int nonTransportingVehicles = Integer.parseInt(values.get(10));
-                    int transportingVehicles = Integer.parseInt(values.get(11));
-
-                    incidents.add(new Incident(
-                            callReceived,
-                            xCoordinate,
-                            yCoordinate,
-                            UrgencyLevel.get(urgencyLevel),
-                            dispatched,
-                            arrivalAtScene,
-                            departureFromScene,
-                            availableNonTransport,
-                            availableTransport,
-                            nonTransportingVehicles,
-                            transportingVehicles));
-
-                    processedLines++;
-                } else {
-                    // Skip line
-                    skippedLines++;
-                }
-
-                line = bufferedReader.readLine();
+        // Header: tidspunkt,xcoor,ycoor,hastegrad,tiltak_type,rykker_ut,ank_hentested,avg_hentested,ledig,ledig_transport,non_transporting_vehicles,transporting_vehicles
+        try {
+            ChunkedCSVReader.Result<IncidentStore.Builder> result = ChunkedCSVReader.read(Path.of(incidentsFilePath),
+                    1, new IncidentParser());
+            for (IncidentStore.Builder chunk : result.chunks()) {
+                incidents.addAll(chunk);
             }
-
+            processedLines = result.parsedLines();
+            skippedLines = result.skippedLines();
         } catch (IOException exception) {
             exception.printStackTrace();
             logger.error("An IOException occurred while loading incidents from file: {}", exception);
@@ -101,18 +79,56 @@ public class IncidentIO {
         logger.info("{} incidents were successfully processed", processedLines);
         logger.info("{} incidents were skipped ({}%)", skippedLines, percentageSkipped);
 
-        return incidents;
+        return incidents.build();
     }
 
-    private static boolean isValid(List<String> values) {
-        return !values.get(5).isBlank() && !values.get(8).isBlank();
-    }
+    // Runs on worker threads while IncidentIO may still be initializing, so it
+    // must not use the static members of IncidentIO
+    private static final class IncidentParser implements ChunkedCSVReader.RowParser<IncidentStore.Builder> {
 
-    private static Optional<LocalDateTime> parseDateTime(String dateTime) {
-        if (dateTime.isBlank()) {
-            return Optional.empty();
+        private static final UrgencyLevel[] urgencyLevels = UrgencyLevel.values();
+
+        @Override
+        public IncidentStore.Builder newChunk() {
+            return new IncidentStore.Builder();
         }
-        return Optional.of(LocalDateTime.parse(dateTime, dateTimeFormatter));
+
+        @Override
+        public boolean parse(Row row, IncidentStore.Builder incidents) {
+            long callReceived = row.parseDateTime(0);
+
+            if (row.isBlank(5) || row.isBlank(8)) {
+                return false;
+            }
+            // Field 4, the dispatch type, is always ambulance
+            incidents.add(
+                    callReceived,
+                    row.parseInt(1),
+                    row.parseInt(2),
+                    parseUrgencyLevel(row),
+                    row.parseDateTime(5),
+                    parseOptionalDateTime(row, 6),
+                    parseOptionalDateTime(row, 7),
+                    row.parseDateTime(8),
+                    row.parseDateTime(9),
+                    row.parseInt(10),
+                    row.parseInt(11));
+            return true;
+        }
+
+        private static UrgencyLevel parseUrgencyLevel(Row row) {
+            for (UrgencyLevel urgencyLevel : urgencyLevels) {
+                if (row.fieldEquals(3, urgencyLevel.getSymbol())) {
+                    return urgencyLevel;
+                }
+            }
+            return null;
+        }
+
+        private static long parseOptionalDateTime(Row row, int field) {
+            return row.isBlank(field) ? IncidentStore.MISSING : row.parseDateTime(field);
+        }
+
     }
 
 }
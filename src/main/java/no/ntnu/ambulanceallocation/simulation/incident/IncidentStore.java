@@ -0,0 +1,348 @@
+package no.ntnu.ambulanceallocation.simulation.incident;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
+
+/**
+ * All incidents, sorted by the time the call was received and stored column
+ * by column in primitive arrays. Times are whole
+ * seconds: the time a call was received as seconds since the epoch, treating
+ * the local date time as UTC, and every later time as seconds after the call
+ * was received, so the intervals used by the simulation are at most one
+ * subtraction away.
+ * <p>
+ * {@link Incident} is a view of one row.
+ */
+public final class IncidentStore {
+
+    // Marks a missing arrival at or departure from the scene
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    private static final byte NO_URGENCY_LEVEL = -1;
+    private static final UrgencyLevel[] urgencyLevelValues = UrgencyLevel.values();
+
+    private final int size;
+    private final long[] callReceived;
+    private final int[] xCoordinates;
+    private final int[] yCoordinates;
+    // Index of the grid cell in the travel time matrix, or Coordinate.UNINDEXED
+    private final int[] cells;
+    private final byte[] urgencyLevels;
+    private final byte[] nonTransportingVehicles;
+    private final byte[] transportingVehicles;
+    private final int[] dispatched;
+    private final int[] arrivalAtScene;
+    private final int[] departureFromScene;
+    private final int[] availableNonTransport;
+    private final int[] availableTransport;
+
+    private IncidentStore(Builder builder) {
+        this(builder.size, Arrays.copyOf(builder.callReceived, builder.size),
+                Arrays.copyOf(builder.xCoordinates, builder.size), Arrays.copyOf(builder.yCoordinates, builder.size),
+                Arrays.copyOf(builder.urgencyLevels, builder.size),
+                Arrays.copyOf(builder.nonTransportingVehicles, builder.size),
+                Arrays.copyOf(builder.transportingVehicles, builder.size),
+                Arrays.copyOf(builder.dispatched, builder.size), Arrays.copyOf(builder.arrivalAtScene, builder.size),
+                Arrays.copyOf(builder.departureFromScene, builder.size),
+                Arrays.copyOf(builder.availableNonTransport, builder.size),
+                Arrays.copyOf(builder.availableTransport, builder.size));
+    }
+
+    // Adopts the given columns, which must all have the given length. Rows are
+    // sorted by the time the call was received, keeping the order of equal times.
+    IncidentStore(int size, long[] callReceived, int[] xCoordinates, int[] yCoordinates, byte[] urgencyLevels,
+            byte[] nonTransportingVehicles, byte[] transportingVehicles, int[] dispatched, int[] arrivalAtScene,
+            int[] departureFromScene, int[] availableNonTransport, int[] availableTransport) {
+        int[] order = sortOrder(callReceived);
+        this.size = size;
+        this.callReceived = permute(callReceived, order);
+        this.xCoordinates = permute(xCoordinates, order);
+        this.yCoordinates = permute(yCoordinates, order);
+        this.urgencyLevels = permute(urgencyLevels, order);
+        this.nonTransportingVehicles = permute(nonTransportingVehicles, order);
+        this.transportingVehicles = permute(transportingVehicles, order);
+        this.dispatched = permute(dispatched, order);
+        this.arrivalAtScene = permute(arrivalAtScene, order);
+        this.departureFromScene = permute(departureFromScene, order);
+        this.availableNonTransport = permute(availableNonTransport, order);
+        this.availableTransport = permute(availableTransport, order);
+        cells = new int[size];
+        for (int i = 0; i < size; i++) {
+            cells[i] = DistanceIO.indexOf(xCoordinates[i], yCoordinates[i]);
+        }
+    }
+
+    // The incidents of all stores in order, each store covering later times than
+    // the previous one
+    static IncidentStore concat(List<IncidentStore> stores) {
+        Builder builder = new Builder();
+        for (IncidentStore store : stores) {
+            builder.addAll(store);
+        }
+        return builder.build();
+    }
+
+    // Null if the times are already sorted
+    private static int[] sortOrder(long[] callReceived) {
+        for (int i = 1; i < callReceived.length; i++) {
+            if (callReceived[i] < callReceived[i - 1]) {
+                return IntStream.range(0, callReceived.length)
+                        .boxed()
+                        .sorted(Comparator.comparingLong(incident -> callReceived[incident]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+            }
+        }
+        return null;
+    }
+
+    private static long[] permute(long[] values, int[] order) {
+        return order == null ? values : Arrays.stream(order).mapToLong(i -> values[i]).toArray();
+    }
+
+    private static int[] permute(int[] values, int[] order) {
+        return order == null ? values : Arrays.stream(order).map(i -> values[i]).toArray();
+    }
+
+    private static byte[] permute(byte[] values, int[] order) {
+        if (order == null) {
+            return values;
+        }
+        byte[] permuted = new byte[values.length];
+        for (int i = 0; i < order.length; i++) {
+            permuted[i] = values[order[i]];
+        }
+        return permuted;
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Incident get(int incident) {
+        return new Incident(this, incident);
+    }
+
+    // Index of the first incident received after the given epoch second
+    public int firstAfter(long epochSecond) {
+        return firstAtOrAfter(epochSecond + 1);
+    }
+
+    // Index of the first incident received at or after the given epoch second
+    public int firstAtOrAfter(long epochSecond) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (callReceived[middle] < epochSecond) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // The incidents received strictly between the given times, as a view of this
+    // store
+    public List<Incident> between(LocalDateTime after, LocalDateTime before) {
+        int from = firstAfter(toEpochSecond(after));
+        int to = Math.max(from, firstAtOrAfter(toEpochSecond(before)));
+        return new AbstractList<>() {
+
+            @Override
+            public Incident get(int index) {
+                Objects.checkIndex(index, to - from);
+                return IncidentStore.this.get(from + index);
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+
+        };
+    }
+
+    public long getCallReceived(int incident) {
+        return callReceived[incident];
+    }
+
+    public int getXCoordinate(int incident) {
+        return xCoordinates[incident];
+    }
+
+    public int getYCoordinate(int incident) {
+        return yCoordinates[incident];
+    }
+
+    public int getCell(int incident) {
+        return cells[incident];
+    }
+
+    public Coordinate getLocation(int incident) {
+        if (cells[incident] == Coordinate.UNINDEXED) {
+            return DistanceIO.coordinateRegistry.intern(xCoordinates[incident], yCoordinates[incident]);
+        }
+        return DistanceIO.coordinateRegistry.get(cells[incident]);
+    }
+
+    public UrgencyLevel getUrgencyLevel(int incident) {
+        byte urgencyLevel = urgencyLevels[incident];
+        return urgencyLevel == NO_URGENCY_LEVEL ? null : urgencyLevelValues[urgencyLevel];
+    }
+
+    public int getNonTransportingVehicles(int incident) {
+        return nonTransportingVehicles[incident];
+    }
+
+    public int getTransportingVehicles(int incident) {
+        return transportingVehicles[incident];
+    }
+
+    // The following times are in seconds after the call was received
+
+    public int getDispatched(int incident) {
+        return dispatched[incident];
+    }
+
+    public int getArrivalAtScene(int incident) {
+        return arrivalAtScene[incident];
+    }
+
+    public int getDepartureFromScene(int incident) {
+        return departureFromScene[incident];
+    }
+
+    public int getAvailableNonTransport(int incident) {
+        return availableNonTransport[incident];
+    }
+
+    public int getAvailableTransport(int incident) {
+        return availableTransport[incident];
+    }
+
+    public static class Builder {
+
+        private int size;
+        private long[] callReceived = new long[1 << 10];
+        private int[] xCoordinates = new int[1 << 10];
+        private int[] yCoordinates = new int[1 << 10];
+        private byte[] urgencyLevels = new byte[1 << 10];
+        private byte[] nonTransportingVehicles = new byte[1 << 10];
+        private byte[] transportingVehicles = new byte[1 << 10];
+        private int[] dispatched = new int[1 << 10];
+        private int[] arrivalAtScene = new int[1 << 10];
+        private int[] departureFromScene = new int[1 << 10];
+        private int[] availableNonTransport = new int[1 << 10];
+        private int[] availableTransport = new int[1 << 10];
+
+        // Times after callReceived are in seconds since the epoch, or MISSING for
+        // the arrival at and departure from the scene
+        public Builder add(long callReceived, int xCoordinate, int yCoordinate, UrgencyLevel urgencyLevel,
+                long dispatched, long arrivalAtScene, long departureFromScene, long availableNonTransport,
+                long availableTransport, int nonTransportingVehicles, int transportingVehicles) {
+            if (nonTransportingVehicles > Byte.MAX_VALUE || transportingVehicles > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many vehicles for incident at " + toDateTime(callReceived));
+            }
+            if (size == this.callReceived.length) {
+                grow();
+            }
+            this.callReceived[size] = callReceived;
+            this.xCoordinates[size] = xCoordinate;
+            this.yCoordinates[size] = yCoordinate;
+            this.urgencyLevels[size] = urgencyLevel == null ? NO_URGENCY_LEVEL : (byte) urgencyLevel.ordinal();
+            this.nonTransportingVehicles[size] = (byte) nonTransportingVehicles;
+            this.transportingVehicles[size] = (byte) transportingVehicles;
+            this.dispatched[size] = secondsAfter(callReceived, dispatched);
+            this.arrivalAtScene[size] = arrivalAtScene == MISSING ? MISSING
+                    : secondsAfter(callReceived, arrivalAtScene);
+            this.departureFromScene[size] = departureFromScene == MISSING ? MISSING
+                    : secondsAfter(callReceived, departureFromScene);
+            this.availableNonTransport[size] = secondsAfter(callReceived, availableNonTransport);
+            this.availableTransport[size] = secondsAfter(callReceived, availableTransport);
+            size++;
+            return this;
+        }
+
+        Builder addAll(IncidentStore store) {
+            while (size + store.size > callReceived.length) {
+                grow();
+            }
+            System.arraycopy(store.callReceived, 0, callReceived, size, store.size);
+            System.arraycopy(store.xCoordinates, 0, xCoordinates, size, store.size);
+            System.arraycopy(store.yCoordinates, 0, yCoordinates, size, store.size);
+            System.arraycopy(store.urgencyLevels, 0, urgencyLevels, size, store.size);
+            System.arraycopy(store.nonTransportingVehicles, 0, nonTransportingVehicles, size, store.size);
+            System.arraycopy(store.transportingVehicles, 0, transportingVehicles, size, store.size);
+            System.arraycopy(store.dispatched, 0, dispatched, size, store.size);
+            System.arraycopy(store.arrivalAtScene, 0, arrivalAtScene, size, store.size);
+            System.arraycopy(store.departureFromScene, 0, departureFromScene, size, store.size);
+            System.arraycopy(store.availableNonTransport, 0, availableNonTransport, size, store.size);
+            System.arraycopy(store.availableTransport, 0, availableTransport, size, store.size);
+            size += store.size;
+            return this;
+        }
+
+        public Builder addAll(Builder other) {
+            while (size + other.size > callReceived.length) {
+                grow();
+            }
+            System.arraycopy(other.callReceived, 0, callReceived, size, other.size);
+            System.arraycopy(other.xCoordinates, 0, xCoordinates, size, other.size);
+            System.arraycopy(other.yCoordinates, 0, yCoordinates, size, other.size);
+            System.arraycopy(other.urgencyLevels, 0, urgencyLevels, size, other.size);
+            System.arraycopy(other.nonTransportingVehicles, 0, nonTransportingVehicles, size, other.size);
+            System.arraycopy(other.transportingVehicles, 0, transportingVehicles, size, other.size);
+            System.arraycopy(other.dispatched, 0, dispatched, size, other.size);
+            System.arraycopy(other.arrivalAtScene, 0, arrivalAtScene, size, other.size);
+            System.arraycopy(other.departureFromScene, 0, departureFromScene, size, other.size);
+            System.arraycopy(other.availableNonTransport, 0, availableNonTransport, size, other.size);
+            System.arraycopy(other.availableTransport, 0, availableTransport, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        public IncidentStore build() {
+            return new IncidentStore(this);
+        }
+
+        private void grow() {
+            int length = 2 * callReceived.length;
+            callReceived = Arrays.copyOf(callReceived, length);
+            xCoordinates = Arrays.copyOf(xCoordinates, length);
+            yCoordinates = Arrays.copyOf(yCoordinates, length);
+            urgencyLevels = Arrays.copyOf(urgencyLevels, length);
+            nonTransportingVehicles = Arrays.copyOf(nonTransportingVehicles, length);
+            transportingVehicles = Arrays.copyOf(transportingVehicles, length);
+            dispatched = Arrays.copyOf(dispatched, length);
+            arrivalAtScene = Arrays.copyOf(arrivalAtScene, length);
+            departureFromScene = Arrays.copyOf(departureFromScene, length);
+            availableNonTransport = Arrays.copyOf(availableNonTransport, length);
+            availableTransport = Arrays.copyOf(availableTransport, length);
+        }
+
+        private static int secondsAfter(long callReceived, long time) {
+            return Math.toIntExact(time - callReceived);
+        }
+
+    }
+
+}
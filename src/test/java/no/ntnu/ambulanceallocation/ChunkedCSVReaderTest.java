@@ -0,0 +1,62 @@
+package no.ntnu.ambulanceallocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkedCSVReaderTest {
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static class LineParser implements ChunkedCSVReader.RowParser<List<String>> {
+
+        @Override
+        public List<String> newChunk() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean parse(ChunkedCSVReader.Row row, List<String> chunk) {
+            if (row.isBlank(1)) {
+                return false;
+            }
+            LocalDateTime dateTime = LocalDateTime.parse(row.getString(0), formatter);
+            assertEquals(dateTime.toEpochSecond(ZoneOffset.UTC), row.parseDateTime(0));
+            assertEquals(Double.parseDouble(row.getString(1)), row.parseDouble(1));
+            chunk.add(row.getString(0) + "," + row.parseLong(2));
+            return true;
+        }
+
+    }
+
+    @Test
+    public void chunksShouldKeepFileOrder() {
+        StringBuilder csv = new StringBuilder("time,value,id\n");
+        List<String> expected = new ArrayList<>();
+        LocalDateTime dateTime = LocalDateTime.of(1999, 12, 31, 23, 59, 58);
+        for (int i = 0; i < 40_000; i++) {
+            String time = dateTime.plusSeconds(7919L * i).format(formatter);
+            if (i % 1000 == 0) {
+                csv.append(time).append(", ,").append(i).append("\r\n");
+                continue;
+            }
+            csv.append(time).append(',').append(59.8 + i * 1.0e-9).append(',').append(i).append('\n');
+            expected.add(time + "," + i);
+        }
+
+        ChunkedCSVReader.Result<List<String>> result = ChunkedCSVReader.read(
+                csv.toString().getBytes(StandardCharsets.UTF_8), 1, new LineParser());
+
+        assertEquals(expected, result.chunks().stream().flatMap(List::stream).toList());
+        assertEquals(40, result.skippedLines());
+        assertEquals(expected.size(), result.parsedLines());
+    }
+
+}
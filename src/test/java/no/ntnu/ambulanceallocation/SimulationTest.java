@@ -0,0 +1,67 @@
+package no.ntnu.ambulanceallocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+
+public class SimulationTest {
+
+    // Two days starting in the night shift, with four shift changes
+    private final Config config = Config.withinPeriod(LocalDateTime.of(2018, 1, 8, 0, 0),
+            LocalDateTime.of(2018, 1, 10, 0, 0));
+
+    @Test
+    public void resumedRunsShouldMatchNewRuns() {
+        // The night shift is simulated first. The fleets are small enough for
+        // calls to wait partially responded, and the day shifts give the base
+        // stations other numbers of ambulances than the night shifts, so the
+        // ambulances of resumed runs get other ids.
+        List<Integer> night = List.of(1, 1, 4);
+        List<Allocation> allocations = List.of(
+                allocation(List.of(1, 1, 4), night),
+                allocation(List.of(0, 1, 1, 1, 4), night),
+                allocation(List.of(4), night),
+                allocation(List.of(0, 0, 1, 4, 4, 9), night),
+                allocation(List.of(0, 1, 1, 1, 4), night),
+                allocation(List.of(1, 4, 4, 4), List.of(1, 4)),
+                allocation(List.of(1, 1, 4), night),
+                allocation(List.of(1, 4, 4, 4), List.of(1, 4)),
+                allocation(List.of(0, 0, 1, 4, 4, 9), night));
+
+        boolean checkpoints = Parameters.SIMULATION_CHECKPOINTS;
+        boolean orderedByType = Parameters.ORDER_SIMULTANEOUS_EVENTS_BY_TYPE;
+        Parameters.SIMULATION_CHECKPOINTS = true;
+        try {
+            for (boolean byType : new boolean[] { false, true }) {
+                Parameters.ORDER_SIMULTANEOUS_EVENTS_BY_TYPE = byType;
+                Simulation simulation = Simulation.forCurrentThread(config);
+                long resumedEvents = 0;
+                long newEvents = 0;
+                for (Allocation allocation : allocations) {
+                    Simulation newSimulation = new Simulation(config);
+                    double average = newSimulation.simulate(allocation).average();
+                    newEvents += newSimulation.getProcessedEvents();
+                    assertEquals(average, simulation.simulate(allocation).average());
+                    resumedEvents += simulation.getProcessedEvents();
+                }
+                assertTrue(resumedEvents < newEvents);
+            }
+        } finally {
+            Parameters.SIMULATION_CHECKPOINTS = checkpoints;
+            Parameters.ORDER_SIMULTANEOUS_EVENTS_BY_TYPE = orderedByType;
+        }
+    }
+
+    private static Allocation allocation(List<Integer> day, List<Integer> night) {
+        return new Allocation(List.of(day, night));
+    }
+
+}
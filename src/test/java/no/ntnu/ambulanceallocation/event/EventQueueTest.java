@@ -0,0 +1,127 @@
+package no.ntnu.ambulanceallocation.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import no.ntnu.ambulanceallocation.simulation.event.EventQueue;
+import no.ntnu.ambulanceallocation.simulation.event.EventQueue.Type;
+
+public class EventQueueTest {
+
+    @Test
+    public void packedEventsShouldKeepTheirFields() {
+        long event = EventQueue.pack(604_800, Type.SCENE_DEPARTURE, 123_456);
+        assertEquals(604_800, EventQueue.time(event));
+        assertEquals(Type.SCENE_DEPARTURE, EventQueue.type(event));
+        assertEquals(123_456, EventQueue.entity(event));
+        assertThrows(IllegalArgumentException.class, () -> EventQueue.pack(-1, Type.NEW_CALL, 0));
+    }
+
+    @Test
+    public void eventsShouldBePolledByTimeThenTypeThenEntity() {
+        EventQueue queue = new EventQueue();
+        queue.add(10, Type.NEW_CALL, 2);
+        queue.add(10, Type.NEW_CALL, 1);
+        queue.add(10, Type.JOB_COMPLETION, 7);
+        queue.add(5, Type.LOCATION_UPDATE, 3);
+
+        assertEquals(EventQueue.pack(5, Type.LOCATION_UPDATE, 3), queue.poll());
+        assertEquals(EventQueue.pack(10, Type.JOB_COMPLETION, 7), queue.poll());
+        assertEquals(EventQueue.pack(10, Type.NEW_CALL, 1), queue.poll());
+        assertEquals(EventQueue.pack(10, Type.NEW_CALL, 2), queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void orderShouldNotDependOnInsertionOrder() {
+        SplittableRandom random = new SplittableRandom(1);
+        List<Long> events = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            events.add(EventQueue.pack(random.nextInt(1_000), Type.values()[random.nextInt(4)],
+                    random.nextInt(100)));
+        }
+
+        EventQueue queue = new EventQueue();
+        events.forEach(queue::add);
+        List<Long> polled = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            polled.add(queue.poll());
+        }
+
+        events.sort(null);
+        assertEquals(events, polled);
+    }
+
+    @Test
+    public void eventsNotOrderedByTypeShouldBePolledLikeFromAPriorityQueue() {
+        SplittableRandom random = new SplittableRandom(3);
+        EventQueue queue = new EventQueue(false);
+        PriorityQueue<Long> priorityQueue = new PriorityQueue<>(Comparator.comparingInt(EventQueue::time));
+        for (int i = 0; i < 10_000; i++) {
+            if (random.nextInt(3) == 0 && !queue.isEmpty()) {
+                assertEquals((long) priorityQueue.poll(), queue.poll());
+            } else {
+                long event = EventQueue.pack(random.nextInt(1_000), Type.values()[random.nextInt(4)],
+                        random.nextInt(100));
+                queue.add(event);
+                priorityQueue.add(event);
+            }
+        }
+        while (!queue.isEmpty()) {
+            assertEquals((long) priorityQueue.poll(), queue.poll());
+        }
+        assertTrue(priorityQueue.isEmpty());
+    }
+
+    @Test
+    public void copiesShouldNotShareEvents() {
+        EventQueue original = new EventQueue();
+        for (int i = 0; i < 1_000; i++) {
+            original.add(1_000 - i, Type.NEW_CALL, i);
+        }
+        EventQueue copy = new EventQueue();
+        copy.add(0, Type.JOB_COMPLETION, 0);
+        copy.copyFrom(original);
+
+        assertEquals(original.size(), copy.size());
+        assertEquals(EventQueue.pack(1, Type.NEW_CALL, 999), copy.poll());
+        assertEquals(EventQueue.pack(1, Type.NEW_CALL, 999), original.peek());
+        assertEquals(1_000, original.size());
+    }
+
+    @Test
+    public void copiesShouldMapEntitiesOfTheTypeInOrder() {
+        EventQueue original = new EventQueue();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 1_000; i++) {
+            original.add(random.nextInt(50), random.nextBoolean() ? Type.JOB_COMPLETION : Type.NEW_CALL,
+                    random.nextInt(100));
+        }
+        EventQueue copy = new EventQueue();
+        copy.copyFrom(original, Type.JOB_COMPLETION, entity -> entity < 50 ? entity : entity + 10);
+
+        long previous = Long.MIN_VALUE;
+        while (!original.isEmpty()) {
+            long event = original.poll();
+            long copied = copy.poll();
+            assertTrue(copied >= previous);
+            assertEquals(EventQueue.time(event), EventQueue.time(copied));
+            assertEquals(EventQueue.type(event), EventQueue.type(copied));
+            int entity = EventQueue.entity(event);
+            assertEquals(EventQueue.type(event) == Type.JOB_COMPLETION && entity >= 50 ? entity + 10 : entity,
+                    EventQueue.entity(copied));
+            previous = copied;
+        }
+        assertTrue(copy.isEmpty());
+    }
+
+}
@@ -0,0 +1,53 @@
+package no.ntnu.ambulanceallocation.grid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.GridIO;
+import no.ntnu.ambulanceallocation.simulation.grid.SpatialIndex;
+
+public class SpatialIndexTest {
+
+    private final List<Coordinate> coordinates = GridIO.getGridCoordinates();
+    private final SpatialIndex spatialIndex = new SpatialIndex(coordinates);
+
+    @Test
+    public void radiusQueryShouldMatchLinearScan() {
+        for (Coordinate center : coordinates.subList(0, 50)) {
+            List<Coordinate> expected = coordinates.stream()
+                    .filter(c -> c.euclideanDistanceTo(center) <= 3200)
+                    .toList();
+            assertEquals(new HashSet<>(expected), new HashSet<>(spatialIndex.withinRadius(center, 3200)));
+        }
+    }
+
+    @Test
+    public void neighborsShouldBeTheSurroundingCells() {
+        Coordinate center = coordinates.get(0);
+        List<Coordinate> neighbors = spatialIndex.getNeighbors(center);
+
+        assertTrue(neighbors.size() <= 8);
+        assertTrue(neighbors.stream().allMatch(c -> !c.equals(center) && c.euclideanDistanceTo(center) < 1500));
+    }
+
+    @Test
+    public void nearestShouldMatchLinearScan() {
+        Coordinate center = new Coordinate(262948, 6649765, 0L, Coordinate.UNINDEXED);
+        List<Double> expected = coordinates.stream()
+                .sorted(Comparator.comparingDouble(c -> c.euclideanDistanceTo(center)))
+                .limit(10)
+                .map(c -> c.euclideanDistanceTo(center))
+                .toList();
+
+        assertEquals(expected, spatialIndex.nearest(center, 10).stream().map(c -> c.euclideanDistanceTo(center))
+                .toList());
+    }
+
+}
@@ -0,0 +1,162 @@
+package no.ntnu.ambulanceallocation.grid;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import no.ntnu.ambulanceallocation.simulation.grid.BinaryDistanceIO;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.TravelTimeMatrix;
+
+public class TravelTimeMatrixTest {
+
+    private final Coordinate first = new Coordinate(262500, 6649500, 22620006649000L, 0);
+    private final Coordinate second = new Coordinate(263500, 6649500, 22630006649000L, 1);
+
+    @Test
+    public void travelTimesShouldBeRoundedAndStoredPerPair() {
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 0, 1 }, new double[] { 120.4, 90.5 },
+                new Coordinate[][] { null, { first, second } }, 2);
+        TravelTimeMatrix travelTimeMatrix = builder.build(List.of(first, second));
+
+        assertEquals(2, travelTimeMatrix.size());
+        assertEquals(120, travelTimeMatrix.getTravelTime(0, 0));
+        assertEquals(91, travelTimeMatrix.getTravelTime(0, 1));
+        assertArrayEquals(new Coordinate[] { first, second }, travelTimeMatrix.getPath(0, 1));
+        assertTrue(travelTimeMatrix.hasRoute(0, 1));
+        assertEquals(2L, travelTimeMatrix.countRoutes() - travelTimeMatrix.getEstimatedRoutes());
+    }
+
+    @Test
+    public void missingPairsShouldBeEstimatedFromKnownPairs() {
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 0, 1 }, new double[] { 120.4, 90.5 },
+                new Coordinate[][] { null, { first, second } }, 2);
+        TravelTimeMatrix travelTimeMatrix = builder.build(List.of(first, second));
+
+        assertEquals(2, travelTimeMatrix.getEstimatedRoutes());
+        assertTrue(travelTimeMatrix.hasRoute(1, 0));
+        assertEquals(91, travelTimeMatrix.getTravelTime(1, 0));
+        assertEquals(120, travelTimeMatrix.getTravelTime(1, 1));
+        assertNull(travelTimeMatrix.getPath(1, 0));
+    }
+
+    @Test
+    public void pathsWithSharedPrefixesShouldDecodeIndependently() {
+        Coordinate third = new Coordinate(263500, 6650500, 22630006650000L, 2);
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 1, 2 }, new double[] { 60.0, 120.0 },
+                new Coordinate[][] { { first, second }, { first, second, third } }, 2);
+        builder.addRow(2, new int[] { 0 }, new double[] { 120.0 }, new Coordinate[][] { { third, second, first } },
+                1);
+        TravelTimeMatrix travelTimeMatrix = builder.build(List.of(first, second, third));
+
+        assertArrayEquals(new Coordinate[] { first, second }, travelTimeMatrix.getPath(0, 1));
+        assertArrayEquals(new Coordinate[] { first, second, third }, travelTimeMatrix.getPath(0, 2));
+        assertArrayEquals(new Coordinate[] { third, second, first }, travelTimeMatrix.getPath(2, 0));
+        assertNull(travelTimeMatrix.getPath(0, 0));
+    }
+
+    @Test
+    public void pathsShouldDecodeIntoArraysTheyFitIn() {
+        Coordinate third = new Coordinate(263500, 6650500, 22630006650000L, 2);
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 1, 2 }, new double[] { 60.0, 120.0 },
+                new Coordinate[][] { { first, second }, { first, second, third } }, 2);
+        TravelTimeMatrix travelTimeMatrix = builder.build(List.of(first, second, third));
+
+        Coordinate[] path = new Coordinate[2];
+        assertEquals(3, travelTimeMatrix.getPath(0, 2, path));
+        assertArrayEquals(new Coordinate[2], path);
+        assertEquals(2, travelTimeMatrix.getPath(0, 1, path));
+        assertArrayEquals(new Coordinate[] { first, second }, path);
+        path = new Coordinate[4];
+        assertEquals(3, travelTimeMatrix.getPath(0, 2, path));
+        assertArrayEquals(new Coordinate[] { first, second, third, null }, path);
+        assertEquals(-1, travelTimeMatrix.getPath(0, 0, path));
+    }
+
+    @Test
+    public void minimumTravelTimesShouldBeTheLeastIntoEachDestination() {
+        Coordinate third = new Coordinate(263500, 6650500, 22630006650000L, 2);
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 0, 1, 2 }, new double[] { 30.0, 90.0, 200.0 },
+                new Coordinate[][] { null, { first, second }, { first, third } }, 3);
+        builder.addRow(1, new int[] { 0, 1, 2 }, new double[] { 80.0, 40.0, 150.0 },
+                new Coordinate[][] { { second, first }, null, { second, third } }, 3);
+        builder.addRow(2, new int[] { 0, 1, 2 }, new double[] { 210.0, 160.0, 50.0 },
+                new Coordinate[][] { { third, first }, { third, second }, null }, 3);
+        TravelTimeMatrix travelTimeMatrix = builder.build(List.of(first, second, third));
+
+        assertEquals(30, travelTimeMatrix.getMinimumTravelTime(0));
+        assertEquals(40, travelTimeMatrix.getMinimumTravelTime(1));
+        assertEquals(50, travelTimeMatrix.getMinimumTravelTime(2));
+    }
+
+    @Test
+    public void binaryFileShouldRoundTrip(@TempDir Path directory) throws IOException {
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 0, 1 }, new double[] { 0.0, 90.0 },
+                new Coordinate[][] { null, { first, second } }, 2);
+        Path file = directory.resolve("od.bin");
+        BinaryDistanceIO.write(builder.build(List.of(first, second)), file);
+        TravelTimeMatrix travelTimeMatrix = BinaryDistanceIO.map(file);
+
+        assertEquals(second, travelTimeMatrix.getCoordinate(1));
+        assertTrue(travelTimeMatrix.isOrigin(0));
+        assertFalse(travelTimeMatrix.isOrigin(1));
+        assertEquals(90, travelTimeMatrix.getTravelTime(0, 1));
+        assertEquals(2, travelTimeMatrix.getEstimatedRoutes());
+        assertEquals(90, travelTimeMatrix.getTravelTime(1, 0));
+        assertArrayEquals(new Coordinate[] { first, second }, travelTimeMatrix.getPath(0, 1));
+    }
+
+    @Test
+    public void lazilyLoadedPathsShouldMatchBuiltPaths(@TempDir Path directory) throws IOException {
+        Coordinate third = new Coordinate(263500, 6650500, 22630006650000L, 2);
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 2 }, new double[] { 120.0 }, new Coordinate[][] { { first, second, third } }, 1);
+        builder.addRow(2, new int[] { 0 }, new double[] { 120.0 }, new Coordinate[][] { { third, first } }, 1);
+        Path file = directory.resolve("od.bin");
+        BinaryDistanceIO.write(builder.build(List.of(first, second, third)), file);
+        TravelTimeMatrix travelTimeMatrix = BinaryDistanceIO.mapWithLazyPaths(file, 1);
+
+        assertEquals(120, travelTimeMatrix.getTravelTime(2, 0));
+        assertArrayEquals(new Coordinate[] { first, second, third }, travelTimeMatrix.getPath(0, 2));
+        assertArrayEquals(new Coordinate[] { third, first }, travelTimeMatrix.getPath(2, 0));
+        assertArrayEquals(new Coordinate[] { first, second, third }, travelTimeMatrix.getPath(0, 2));
+        assertNull(travelTimeMatrix.getPath(1, 0));
+    }
+
+    @Test
+    public void quantizedTravelTimesShouldStayWithinErrorBound() {
+        Coordinate third = new Coordinate(263500, 6650500, 22630006650000L, 2);
+        TravelTimeMatrix.Builder builder = new TravelTimeMatrix.Builder();
+        builder.addRow(0, new int[] { 0, 1, 2 }, new double[] { 0.0, 100_000.0, 37.0 },
+                new Coordinate[][] { null, { first, second }, { first, third } }, 3);
+        TravelTimeMatrix travelTimeMatrix = builder.build(List.of(first, second, third));
+        TravelTimeMatrix quantized = travelTimeMatrix.quantized();
+
+        assertTrue(quantized.isQuantized());
+        assertEquals(1, quantized.getMaxQuantizationError());
+        for (int origin = 0; origin < 3; origin++) {
+            for (int destination = 0; destination < 3; destination++) {
+                assertTrue(Math.abs(travelTimeMatrix.getTravelTime(origin, destination)
+                        - quantized.getTravelTime(origin, destination)) <= 1);
+            }
+        }
+        assertEquals(0, quantized.getTravelTime(0, 0));
+        assertArrayEquals(new Coordinate[] { first, second }, quantized.getPath(0, 1));
+    }
+
+}
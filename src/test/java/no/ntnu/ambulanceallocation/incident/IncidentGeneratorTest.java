@@ -0,0 +1,60 @@
+package no.ntnu.ambulanceallocation.incident;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentGenerator;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentStore;
+import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
+
+public class IncidentGeneratorTest {
+
+    // Four calls at 08:15 every day for four weeks, starting on a Monday
+    private final IncidentGenerator generator;
+
+    public IncidentGeneratorTest() {
+        IncidentStore.Builder builder = new IncidentStore.Builder();
+        LocalDateTime monday = LocalDateTime.of(2018, 1, 8, 8, 15);
+        for (int day = 0; day < 28; day++) {
+            for (int call = 0; call < 4; call++) {
+                long callReceived = IncidentStore.toEpochSecond(monday.plusDays(day).plusSeconds(call));
+                builder.add(callReceived, 264500, 6643500, UrgencyLevel.ACUTE, callReceived + 60,
+                        callReceived + 600, callReceived + 1200, callReceived + 1500, callReceived + 2400, 0, 1);
+            }
+        }
+        generator = IncidentGenerator.fit(builder.build(), 42);
+    }
+
+    @Test
+    public void ratesShouldFollowTheHourOfTheWeek() {
+        assertEquals(4.0, generator.getHourlyRate(8), 1e-9);
+        assertEquals(4.0, generator.getHourlyRate(6 * 24 + 8), 1e-9);
+        assertEquals(0.0, generator.getHourlyRate(9), 1e-9);
+    }
+
+    @Test
+    public void replicationsShouldBeReproducibleAndIndependent() {
+        LocalDateTime start = LocalDateTime.of(2019, 3, 4, 0, 0);
+        LocalDateTime end = start.plusWeeks(2);
+        List<LocalDateTime> first = generator.generate(start, end, 0).map(Incident::callReceived).toList();
+
+        assertEquals(first, generator.generate(start, end, 0).map(Incident::callReceived).toList());
+        assertNotEquals(first, generator.generate(start, end, 1).map(Incident::callReceived).toList());
+        assertTrue(first.size() > 14 && first.size() < 14 * 8);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(8, first.get(i).getHour());
+            assertTrue(i == 0 || !first.get(i).isBefore(first.get(i - 1)));
+        }
+        Incident incident = generator.generate(start, end, 0).findFirst().orElseThrow();
+        assertEquals(1200, incident.getDuration());
+        assertEquals(2400, incident.getTotalIntervalTransport());
+    }
+
+}
@@ -0,0 +1,148 @@
+package no.ntnu.ambulanceallocation.incident;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import no.ntnu.ambulanceallocation.simulation.incident.BinaryIncidentIO;
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentArchive;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentStore;
+import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
+
+public class IncidentStoreTest {
+
+    private final LocalDateTime callReceived = LocalDateTime.of(2018, 1, 7, 12, 3, 3);
+
+    private long at(int seconds) {
+        return IncidentStore.toEpochSecond(callReceived.plusSeconds(seconds));
+    }
+
+    @Test
+    public void intervalsShouldMatchTimestamps() {
+        IncidentStore store = new IncidentStore.Builder()
+                .add(at(0), 264500, 6643500, UrgencyLevel.REGULAR_UNPLANNED, at(149), at(892), at(2153), at(2363),
+                        at(3698), 1, 1)
+                .build();
+        Incident incident = store.get(0);
+
+        assertEquals(callReceived, incident.callReceived());
+        assertEquals(UrgencyLevel.REGULAR_UNPLANNED, incident.urgencyLevel());
+        assertEquals(149, incident.getDispatchDelay());
+        assertEquals(892 - 149, incident.getTravelTime());
+        assertEquals(2153 - 892, incident.getTimeSpentAtScene());
+        assertEquals(2153, incident.getDuration());
+        assertEquals(2363, incident.getTotalIntervalNonTransport());
+        assertEquals(3698 - 2153, incident.getTimeFromDepartureToAvailableTransport());
+        assertEquals(Optional.of(callReceived.plusSeconds(892)), incident.arrivalAtScene());
+    }
+
+    @Test
+    public void missingTimesShouldBeReportedAsAbsent() {
+        IncidentStore store = new IncidentStore.Builder()
+                .add(at(0), 264500, 6669500, UrgencyLevel.URGENT, at(43), IncidentStore.MISSING,
+                        IncidentStore.MISSING, at(600), at(600), 0, 1)
+                .build();
+        Incident incident = store.get(0);
+
+        assertFalse(incident.hasArrivalAtScene());
+        assertFalse(incident.hasDepartureFromScene());
+        assertTrue(incident.departureFromScene().isEmpty());
+        assertThrows(IllegalStateException.class, incident::getDuration);
+        assertEquals(600, incident.getTotalIntervalNonTransport());
+    }
+
+    @Test
+    public void binarySnapshotShouldRoundTrip(@TempDir Path directory) throws IOException {
+        IncidentStore store = new IncidentStore.Builder()
+                .add(at(0), 264500, 6643500, UrgencyLevel.ACUTE, at(149), at(892), at(2153), at(2363), at(3698), 1, 1)
+                .add(at(13), 264500, 6669500, null, at(56), IncidentStore.MISSING, IncidentStore.MISSING, at(600),
+                        at(600), 0, 2)
+                .build();
+        Path csvFile = Files.writeString(directory.resolve("incidents.csv"), "header\n");
+        Path binaryFile = directory.resolve("incidents.bin");
+        BinaryIncidentIO.write(store, binaryFile, csvFile);
+
+        assertTrue(BinaryIncidentIO.isUpToDate(binaryFile, csvFile));
+        IncidentStore mapped = BinaryIncidentIO.map(binaryFile);
+        assertEquals(2, mapped.size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(store.get(i).toString(), mapped.get(i).toString());
+            assertEquals(store.get(i).arrivalAtScene(), mapped.get(i).arrivalAtScene());
+            assertEquals(store.get(i).getTotalIntervalTransport(), mapped.get(i).getTotalIntervalTransport());
+            assertEquals(store.get(i).transportingVehicles(), mapped.get(i).transportingVehicles());
+        }
+
+        Files.writeString(csvFile, "header\nchanged\n");
+        assertFalse(BinaryIncidentIO.isUpToDate(binaryFile, csvFile));
+    }
+
+    @Test
+    public void windowShouldSliceIncidentsSortedByCallReceived() {
+        IncidentStore.Builder builder = new IncidentStore.Builder();
+        for (int seconds : new int[] { 30, 10, 20, 20, 40 }) {
+            builder.add(at(seconds), 264500, seconds, UrgencyLevel.ACUTE, at(seconds), IncidentStore.MISSING,
+                    IncidentStore.MISSING, at(seconds + 60), at(seconds + 60), 0, 1);
+        }
+        IncidentStore store = builder.build();
+
+        List<Integer> window = store.between(callReceived.plusSeconds(10), callReceived.plusSeconds(40)).stream()
+                .map(Incident::yCoordinate)
+                .toList();
+        assertEquals(List.of(20, 20, 30), window);
+        assertEquals(0, store.between(callReceived.plusSeconds(40), callReceived.plusSeconds(41)).size());
+        assertEquals(5, store.between(callReceived, callReceived.plusSeconds(41)).size());
+    }
+
+    @Test
+    public void archiveShouldLoadOnlyOverlappingMonths(@TempDir Path directory) throws IOException {
+        IncidentStore.Builder builder = new IncidentStore.Builder();
+        for (int day = 0; day < 90; day++) {
+            long call = IncidentStore.toEpochSecond(callReceived.plusDays(day));
+            builder.add(call, 264500, day, UrgencyLevel.URGENT, call + 30, IncidentStore.MISSING,
+                    IncidentStore.MISSING, call + 600, call + 600, 0, 1);
+        }
+        Path csvFile = Files.writeString(directory.resolve("incidents.csv"), "header\n");
+        Path archiveDirectory = directory.resolve("incidents");
+        IncidentArchive.write(builder.build(), archiveDirectory, csvFile);
+        IncidentArchive archive = IncidentArchive.open(archiveDirectory);
+
+        assertEquals(90, archive.size());
+        assertEquals(List.of(YearMonth.of(2018, 1), YearMonth.of(2018, 2), YearMonth.of(2018, 3),
+                YearMonth.of(2018, 4)), archive.getMonths());
+        LocalDateTime after = LocalDateTime.of(2018, 1, 31, 0, 0);
+        LocalDateTime before = LocalDateTime.of(2018, 2, 3, 0, 0);
+        assertEquals(25 + 28, archive.load(after, before).size());
+        assertEquals(List.of(24, 25, 26), archive.between(after, before).stream()
+                .map(Incident::yCoordinate)
+                .toList());
+    }
+
+    @Test
+    public void archiveShouldBeOutOfDateOnceTheCsvFileChanges(@TempDir Path directory) throws IOException {
+        Path csvFile = Files.writeString(directory.resolve("incidents.csv"), "first");
+        long call = IncidentStore.toEpochSecond(callReceived);
+        IncidentStore.Builder builder = new IncidentStore.Builder();
+        builder.add(call, 264500, 0, UrgencyLevel.URGENT, call + 30, IncidentStore.MISSING,
+                IncidentStore.MISSING, call + 600, call + 600, 0, 1);
+        Path archiveDirectory = directory.resolve("incidents");
+        IncidentArchive.write(builder.build(), archiveDirectory, csvFile);
+
+        assertTrue(IncidentArchive.isUpToDate(archiveDirectory, csvFile));
+        Files.writeString(csvFile, "first and second");
+        assertFalse(IncidentArchive.isUpToDate(archiveDirectory, csvFile));
+    }
+
+}
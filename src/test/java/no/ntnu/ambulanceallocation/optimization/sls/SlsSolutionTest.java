@@ -1,13 +1,20 @@
 package no.ntnu.ambulanceallocation.optimization.sls;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+
 public class SlsSolutionTest {
 
     @Test
@@ -22,4 +29,48 @@ public class SlsSolutionTest {
         assertTrue(bestSolution.compareTo(worstSolution) <= 0);
     }
 
+    @Test
+    public void fittestShouldBeTheFirstAfterSortingWithExactFitness() {
+        List<SlsSolution> solutions = Stream.generate(SlsSolution::new).limit(4).toList();
+        double[] fitnesses = solutions.stream().mapToDouble(SlsSolutionTest::simulateWithoutReuse).toArray();
+        int best = 0;
+        for (int i = 1; i < fitnesses.length; i++) {
+            if (fitnesses[i] < fitnesses[best]) {
+                best = i;
+            }
+        }
+        double bestFitness = fitnesses[best];
+
+        SlsSolution fittest = SlsSolution.fittest(solutions, false);
+        assertFalse(fittest.isFitnessLowerBound());
+        assertEquals(bestFitness, fittest.getFitness());
+        assertSame(solutions.get(best), fittest);
+        for (int i = 0; i < solutions.size(); i++) {
+            if (solutions.get(i).isFitnessLowerBound()) {
+                assertTrue(solutions.get(i).getFitness(bestFitness) > bestFitness);
+            }
+            assertEquals(fitnesses[i], solutions.get(i).getFitness());
+        }
+    }
+
+    @Test
+    public void evaluatedSolutionsShouldHaveTheFitnessOfIndependentRuns() {
+        SlsSolution first = new SlsSolution();
+        SlsSolution second = new SlsSolution();
+        List<SlsSolution> solutions = List.of(first, second, first.noiseStep(), new SlsSolution(first),
+                second.noiseStep(), new SlsSolution(second));
+        double[] fitnesses = solutions.stream().mapToDouble(SlsSolutionTest::simulateWithoutReuse).toArray();
+
+        SlsSolution.evaluate(solutions, true);
+        for (int i = 0; i < solutions.size(); i++) {
+            assertFalse(solutions.get(i).isFitnessLowerBound());
+            assertEquals(fitnesses[i], solutions.get(i).getFitness());
+        }
+    }
+
+    // The fitness from a new simulation, which resumes from no earlier run
+    private static double simulateWithoutReuse(SlsSolution solution) {
+        return new Simulation(Config.defaultConfig()).simulate(solution.getAllocation()).average();
+    }
+
 }